@@ -14,6 +14,11 @@ public class RpcApplication {
 
     private static volatile RpcConfig rpcConfig;
 
+    private static volatile RpcRuntime rpcRuntime;
+
+    //注册中心（关闭时下线服务节点）
+    private static volatile Registry registry;
+
     //获取配置
     public static RpcConfig getRpcConfig() {
         if (rpcConfig == null) {
@@ -26,6 +31,18 @@ public class RpcApplication {
         return rpcConfig;
     }
 
+    //获取运行时（第一次使用时创建）
+    public static RpcRuntime getRpcRuntime() {
+        if (rpcRuntime == null) {
+            synchronized (RpcApplication.class) {
+                if (rpcRuntime == null) {
+                    rpcRuntime = new RpcRuntime(getRpcConfig());
+                }
+            }
+        }
+        return rpcRuntime;
+    }
+
     //配置文件初始化
     public static void init() {
         RpcConfig newRpcConfig;
@@ -47,13 +64,26 @@ public class RpcApplication {
         //注册中心配置
         RegistryConfig registryConfig = rpcConfig.getRegistryConfig();
         //获取注册中心类别
-        Registry registry = RegistryFactory.getInstance(registryConfig.getRegistry());
+        Registry newRegistry = RegistryFactory.getInstance(registryConfig.getRegistry());
         //注册中心初始化
-        registry.init(registryConfig);
+        newRegistry.init(registryConfig);
         log.info("registry init, config = {}", registryConfig);
 
-        // 创建并注册 Shutdown Hook，JVM 退出时执行操作
-        Runtime.getRuntime().addShutdownHook(new Thread(registry::destroy));
+        // 创建并注册 Shutdown Hook，JVM 退出时执行操作（只注册一次）
+        if (registry == null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(RpcApplication::shutdown));
+        }
+        registry = newRegistry;
+    }
+
+    //关闭：先从注册中心下线服务节点，不再接收新的调用，再关闭运行时
+    public static synchronized void shutdown() {
+        if (registry != null) {
+            registry.destroy();
+        }
+        if (rpcRuntime != null) {
+            rpcRuntime.shutdown();
+        }
     }
 
 }
@@ -0,0 +1,101 @@
+package com.yupi.yurpc;
+
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.server.dispatcher.DispatcherFactory;
+import com.yupi.yurpc.server.tcp.VertxTcpClient;
+import cn.hutool.core.thread.NamedThreadFactory;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+//RPC 运行时，由 RpcApplication 创建和关闭
+//整个进程只有一个 Vert.x 实例（一组事件循环线程），客户端、TCP 服务器、HTTP 服务器共用，请求超时时间轮也只有一个
+//节点指标、压缩指标等统计数据见 metrics 包
+@Slf4j
+public class RpcRuntime {
+
+    //关闭时等待 Vert.x 释放资源的最长时间（单位秒）
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    //Vert.x 实例
+    @Getter
+    private final Vertx vertx;
+
+    //NetClient，建立连接的时间也受全局超时时间限制
+    @Getter
+    private final NetClient netClient;
+
+    //请求超时定时器（时间轮，所有连接共享，添加/取消超时任务都是 O(1)）
+    @Getter
+    private final Timer timeoutTimer;
+
+    //双向流回调线程池（消费端把服务端发来的元素交给调用方的观察者，也执行本地单向调用），首次使用时创建
+    private volatile ExecutorService streamExecutor;
+
+    //是否已关闭
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    public RpcRuntime(RpcConfig rpcConfig) {
+        // 优先使用本地传输，Unix 域套接字依赖本地传输
+        VertxOptions vertxOptions = new VertxOptions().setPreferNativeTransport(rpcConfig.isNativeTransport());
+        if (rpcConfig.getEventLoopPoolSize() > 0) {
+            vertxOptions.setEventLoopPoolSize(rpcConfig.getEventLoopPoolSize());
+        }
+        this.vertx = Vertx.vertx(vertxOptions);
+        this.netClient = vertx.createNetClient(new NetClientOptions()
+                .setConnectTimeout((int) rpcConfig.getTimeout())
+                .setTcpNoDelay(rpcConfig.isTcpNoDelay()));
+        this.timeoutTimer = new HashedWheelTimer(
+                new DefaultThreadFactory("rpc-timeout-timer", true), 10, TimeUnit.MILLISECONDS);
+        log.info("rpc runtime started, native transport = {}", vertx.isNativeTransportEnabled());
+    }
+
+    //获取双向流回调线程池，观察者可能阻塞（例如在回调里继续发送），不能在事件循环线程上执行
+    public ExecutorService getStreamExecutor() {
+        if (streamExecutor == null) {
+            synchronized (this) {
+                if (streamExecutor == null) {
+                    streamExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("rpc-stream-", true));
+                }
+            }
+        }
+        return streamExecutor;
+    }
+
+    //关闭：先关闭客户端连接和业务线程池，再关闭 Vert.x（同时停止服务器）和定时器
+    public void shutdown() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        VertxTcpClient.close();
+        DispatcherFactory.getInstance(RpcApplication.getRpcConfig().getDispatcher()).shutdown();
+        if (streamExecutor != null) {
+            streamExecutor.shutdown();
+        }
+        netClient.close();
+        try {
+            vertx.close().toCompletionStage().toCompletableFuture().get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("rpc runtime close failed", e);
+        }
+        timeoutTimer.stop();
+        log.info("rpc runtime closed");
+    }
+
+    //是否已关闭
+    public boolean isClosed() {
+        return closed.get();
+    }
+}
@@ -0,0 +1,17 @@
+package com.yupi.yurpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+//单向调用（标注在服务接口的方法上，方法返回值必须是 void）
+//消费端把请求写入连接后立即返回，服务提供者执行方法但不发送响应，适用于审计、指标上报等不关心结果的调用
+//单向调用不重试，服务端的异常只记录在服务端日志中
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OneWay {
+}
@@ -9,6 +9,7 @@ import com.yupi.yurpc.registry.LocalRegistry;
 import com.yupi.yurpc.registry.Registry;
 import com.yupi.yurpc.registry.RegistryFactory;
 import com.yupi.yurpc.server.tcp.VertxTcpServer;
+import com.yupi.yurpc.utils.HostUtils;
 
 import java.util.List;
 
@@ -35,6 +36,8 @@ public class ProviderBootstrap {
             serviceMetaInfo.setServiceName(serviceName);
             serviceMetaInfo.setServiceHost(rpcConfig.getServerHost());
             serviceMetaInfo.setServicePort(rpcConfig.getServerPort());
+            serviceMetaInfo.setHostId(HostUtils.getHostId());
+            serviceMetaInfo.setDomainSocketPath(rpcConfig.getDomainSocketPath());
             try {
                 registry.register(serviceMetaInfo);
             } catch (Exception e) {
@@ -0,0 +1,15 @@
+package com.yupi.yurpc.compressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+//消息体压缩器接口
+public interface Compressor {
+
+    //压缩
+    byte[] compress(byte[] bytes) throws IOException;
+
+    //解压，返回解压后的输入流，反序列化器直接从中读取数据
+    InputStream decompress(InputStream inputStream) throws IOException;
+}
@@ -0,0 +1,18 @@
+package com.yupi.yurpc.compressor;
+
+import com.yupi.yurpc.spi.SpiLoader;
+
+
+//压缩器工厂（工厂模式，用于获取压缩器对象）
+public class CompressorFactory {
+
+    static {
+        SpiLoader.load(Compressor.class);
+    }
+
+    // 获取实例
+    public static Compressor getInstance(String key) {
+        return SpiLoader.getInstance(Compressor.class, key);
+    }
+
+}
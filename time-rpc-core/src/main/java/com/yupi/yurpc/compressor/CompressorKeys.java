@@ -0,0 +1,11 @@
+package com.yupi.yurpc.compressor;
+
+
+//压缩器键名常量
+public interface CompressorKeys {
+
+    String NONE = "none";
+    String DEFLATE = "deflate";
+    String GZIP = "gzip";
+
+}
@@ -0,0 +1,42 @@
+package com.yupi.yurpc.compressor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+
+//Deflate 压缩器（JDK 自带）
+//Deflater / Inflater 持有本地内存，每个线程复用一个，避免频繁创建和释放
+public class DeflateCompressor implements Compressor {
+
+    //压缩级别，偏向速度
+    private static final int LEVEL = Deflater.BEST_SPEED;
+
+    private static final ThreadLocal<Deflater> DEFLATER_THREAD_LOCAL = ThreadLocal.withInitial(() -> new Deflater(LEVEL));
+
+    private static final ThreadLocal<Inflater> INFLATER_THREAD_LOCAL = ThreadLocal.withInitial(Inflater::new);
+
+    @Override
+    public byte[] compress(byte[] bytes) throws IOException {
+        Deflater deflater = DEFLATER_THREAD_LOCAL.get();
+        deflater.reset();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 2 + 16);
+        // 使用自定义的 Deflater 时，关闭流不会释放 Deflater
+        try (DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(outputStream, deflater)) {
+            deflaterOutputStream.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+
+    //返回的流需要在当前线程读取完，不能跨线程使用
+    @Override
+    public InputStream decompress(InputStream inputStream) {
+        Inflater inflater = INFLATER_THREAD_LOCAL.get();
+        inflater.reset();
+        return new InflaterInputStream(inputStream, inflater);
+    }
+}
@@ -0,0 +1,18 @@
+package com.yupi.yurpc.compressor;
+
+import java.io.InputStream;
+
+
+//不压缩
+public class NoneCompressor implements Compressor {
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        return bytes;
+    }
+
+    @Override
+    public InputStream decompress(InputStream inputStream) {
+        return inputStream;
+    }
+}
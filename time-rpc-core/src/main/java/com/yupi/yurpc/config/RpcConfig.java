@@ -1,9 +1,11 @@
 package com.yupi.yurpc.config;
 
+import com.yupi.yurpc.compressor.CompressorKeys;
 import com.yupi.yurpc.fault.retry.RetryStrategyKeys;
 import com.yupi.yurpc.fault.tolerant.TolerantStrategyKeys;
 import com.yupi.yurpc.loadbalancer.LoadBalancerKeys;
 import com.yupi.yurpc.serializer.SerializerKeys;
+import com.yupi.yurpc.server.dispatcher.DispatcherKeys;
 import lombok.Data;
 
 
@@ -23,18 +25,100 @@ public class RpcConfig {
     //服务器端口号
     private Integer serverPort = 8080;
 
+    //服务器实例数（每个实例一个事件循环线程，共享同一个端口），0 表示与 CPU 核数相同
+    private int serverInstances = 0;
+
+    //Vert.x 事件循环线程数，0 表示使用 Vert.x 默认值（CPU 核数的 2 倍）
+    private int eventLoopPoolSize = 0;
+
+    //服务端等待 accept 的连接队列长度
+    private int acceptBacklog = 1024;
+
+    //是否开启 TCP_NODELAY（关闭 Nagle 算法，小消息不等待合并）
+    private boolean tcpNoDelay = true;
+
+    //服务端 socket 发送缓冲区大小（单位字节），0 表示使用操作系统默认值
+    private int sendBufferSize = 0;
+
+    //服务端 socket 接收缓冲区大小（单位字节），0 表示使用操作系统默认值
+    private int receiveBufferSize = 0;
+
+    //优先使用本地传输（Linux 下为 epoll，需要应用引入 netty-transport-native-epoll，不可用时自动退回 NIO），Unix 域套接字依赖本地传输
+    private boolean nativeTransport = true;
+
+    //服务端 Unix 域套接字路径（为空表示不开启），同主机的消费者通过它连接，不经过 TCP 协议栈
+    private String domainSocketPath;
+
+    //主机标识（为空时使用本机主机名），用于判断服务提供者和消费者是否在同一主机上
+    private String hostId;
+
     //默认序列化器
     private String serializer = SerializerKeys.JDK;
 
+    //消息体压缩器（消费端配置，请求和响应都使用该压缩器，请求在服务端握手确认支持后才压缩；none 表示不压缩）
+    private String compressor = CompressorKeys.NONE;
+
+    //消息体超过该大小（单位字节）才压缩
+    private int compressThreshold = 2048;
+
     //负载均衡器
     private String loadBalancer = LoadBalancerKeys.ROUND_ROBIN;
 
+    //一致性哈希负载上限系数（0 表示不限制），节点进行中的请求数超过平均值 × 系数时热点键顺延到下一个节点，应大于 1，常用 1.25
+    private double consistentHashLoadFactor = 0;
+
     //重试策略
     private String retryStrategy = RetryStrategyKeys.NO;
 
     //容错策略
     private String tolerantStrategy = TolerantStrategyKeys.FAIL_FAST;
 
+    //每个服务提供者地址的 TCP 连接数（连接多路复用，通常很小的值即可）
+    private int connectionPoolSize = 2;
+
+    //默认请求超时时间（单位毫秒）
+    private long timeout = 3000L;
+
+    //流式调用的接收窗口（元素个数），发送方最多领先接收方这么多个元素，两端缓存的数据都有上限
+    private int streamWindow = 64;
+
+    //批量写出：单次 socket 写出的最大字节数
+    private int writeBatchMaxBytes = 64 * 1024;
+
+    //批量写出：单次 socket 写出的最大消息帧数（设置为 1 即每帧单独写出）
+    private int writeBatchMaxFrames = 128;
+
+    //请求合并：同一服务方法的请求最多合并多少个为一个批量请求
+    private int batchMaxSize = 64;
+
+    //请求合并：收集请求的时间窗口（单位毫秒，0 表示只合并同一次事件循环之前到达的请求，不额外等待）
+    private long batchWindow = 0L;
+
+    //客户端心跳间隔（单位毫秒，0 表示不发送心跳），同时用于采集到服务节点的 RTT
+    private long heartbeatInterval = 5000L;
+
+    //客户端连续多少次心跳未收到响应时关闭连接（下次使用时重建）
+    private int heartbeatMaxMissed = 3;
+
+    //服务端连接空闲超时时间（单位毫秒，0 表示不限制），超过该时间没有任何读写的连接会被关闭，应大于客户端心跳间隔
+    private long serverIdleTimeout = 60000L;
+
+    //服务端请求分发器（决定服务调用在哪个线程上执行）
+    private String dispatcher = DispatcherKeys.POOL;
+
+    //业务线程池线程数（isolated 模式下为每个服务的线程数）
+    private int dispatcherThreads = 200;
+
+    //业务线程池等待队列长度，队列满时直接拒绝请求
+    private int dispatcherQueueSize = 1000;
+
+    //本地调用：服务提供者就在当前 JVM 中（LocalRegistry 中已注册同一版本）时直接调用，不经过注册中心、序列化和网络
+    //默认关闭：开启后调用不再经过负载均衡、重试和容错，需要显式开启
+    private boolean injvm = false;
+
+    //本地调用时通过序列化器复制参数和返回值，保持与远程调用相同的隔离语义（调用双方互不影响对方的对象）
+    private boolean injvmCopy = false;
+
     //模拟调用
     private boolean mock = false;
 
@@ -0,0 +1,69 @@
+package com.yupi.yurpc.config;
+
+import com.yupi.yurpc.constant.RpcConstant;
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+//服务引用配置（消费端，针对单个服务接口，未设置的项使用全局配置）
+@Data
+public class RpcReferenceConfig {
+
+    //服务版本
+    private String serviceVersion = RpcConstant.DEFAULT_SERVICE_VERSION;
+
+    //负载均衡器
+    private String loadBalancer;
+
+    //重试策略
+    private String retryStrategy;
+
+    //容错策略
+    private String tolerantStrategy;
+
+    //服务级别的请求超时时间（单位毫秒）
+    private Long timeout;
+
+    //方法级别的请求超时时间（单位毫秒），方法名 -> 超时时间
+    private Map<String, Long> methodTimeouts = new HashMap<>();
+
+    //单向调用的方法名（与接口方法上的 @OneWay 效果相同）
+    private Set<String> oneWayMethods = new HashSet<>();
+
+    //合并调用的方法名，同一时间窗口内对同一服务节点的调用合并为一个批量请求（适合大量并发的小请求）
+    private Set<String> batchMethods = new HashSet<>();
+
+    //一致性哈希的路由键，方法名 -> 参数下标（使用该参数的字符串形式），未配置的方法按方法名路由
+    private Map<String, Integer> hashKeyArgs = new HashMap<>();
+
+    //复制一份配置（集合也复制），作为代理缓存的键和代理使用的配置，之后修改原配置不会影响已创建的代理
+    public RpcReferenceConfig copy() {
+        RpcReferenceConfig copy = new RpcReferenceConfig();
+        copy.setServiceVersion(serviceVersion);
+        copy.setLoadBalancer(loadBalancer);
+        copy.setRetryStrategy(retryStrategy);
+        copy.setTolerantStrategy(tolerantStrategy);
+        copy.setTimeout(timeout);
+        copy.setMethodTimeouts(new HashMap<>(methodTimeouts));
+        copy.setOneWayMethods(new HashSet<>(oneWayMethods));
+        copy.setBatchMethods(new HashSet<>(batchMethods));
+        copy.setHashKeyArgs(new HashMap<>(hashKeyArgs));
+        return copy;
+    }
+
+    //获取方法的超时时间，优先级：方法级别 > 服务级别 > 全局配置
+    public long getTimeout(String methodName, long defaultTimeout) {
+        Long methodTimeout = methodTimeouts.get(methodName);
+        if (methodTimeout != null && methodTimeout > 0) {
+            return methodTimeout;
+        }
+        if (timeout != null && timeout > 0) {
+            return timeout;
+        }
+        return defaultTimeout;
+    }
+}
@@ -0,0 +1,108 @@
+package com.yupi.yurpc.invoker;
+
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.stream.StreamObserver;
+import lombok.Getter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+
+
+//方法调用器
+//注册服务时预先把方法解析为已绑定服务实例的 MethodHandle，调用时不再做反射查找
+@Getter
+public class MethodInvoker {
+
+    //空参数列表
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    //统一的调用签名 (Object[]) -> Object
+    private static final MethodType GENERIC_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    //方法名称
+    private final String methodName;
+
+    //参数类型列表
+    private final Class<?>[] parameterTypes;
+
+    //响应数据类型（返回 CompletableFuture<T> 的方法为 T）
+    private final Class<?> dataType;
+
+    //是否流式方法（返回 Iterator，元素逐个发送给调用方）
+    private final boolean streaming;
+
+    //是否双向流式方法（StreamObserver<Req> method(StreamObserver<Resp>)）
+    private final boolean bidiStreaming;
+
+    //已绑定服务实例的方法句柄
+    private final MethodHandle methodHandle;
+
+    public MethodInvoker(Object serviceInstance, Method method) {
+        this.methodName = method.getName();
+        this.parameterTypes = method.getParameterTypes();
+        this.dataType = resolveDataType(method);
+        this.streaming = method.getReturnType() == Iterator.class;
+        this.bidiStreaming = isBidiStreaming(method);
+        try {
+            method.setAccessible(true);
+            this.methodHandle = MethodHandles.lookup()
+                    .unreflect(method)
+                    .bindTo(serviceInstance)
+                    .asSpreader(Object[].class, parameterTypes.length)
+                    .asType(GENERIC_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new RpcException("方法解析失败: " + method, e);
+        }
+    }
+
+    //调用方法，抛出的是业务方法本身的异常
+    public Object invoke(Object[] args) throws Throwable {
+        return (Object) methodHandle.invokeExact(args == null ? EMPTY_ARGS : args);
+    }
+
+    //参数类型是否匹配
+    public boolean matches(Class<?>[] requestParameterTypes) {
+        if (requestParameterTypes == null) {
+            return parameterTypes.length == 0;
+        }
+        if (requestParameterTypes.length != parameterTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i] != requestParameterTypes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //是否双向流式方法，消费端和服务端使用同一个判断
+    public static boolean isBidiStreaming(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        return method.getReturnType() == StreamObserver.class && types.length == 1 && types[0] == StreamObserver.class;
+    }
+
+    //获取响应数据类型，CompletableFuture<T> 取 T 的类型，用于响应数据的反序列化
+    private static Class<?> resolveDataType(Method method) {
+        if (method.getReturnType() != CompletableFuture.class) {
+            return method.getReturnType();
+        }
+        Type returnType = method.getGenericReturnType();
+        if (returnType instanceof ParameterizedType) {
+            Type valueType = ((ParameterizedType) returnType).getActualTypeArguments()[0];
+            if (valueType instanceof Class) {
+                return (Class<?>) valueType;
+            }
+            if (valueType instanceof ParameterizedType) {
+                return (Class<?>) ((ParameterizedType) valueType).getRawType();
+            }
+        }
+        return Object.class;
+    }
+}
@@ -0,0 +1,65 @@
+package com.yupi.yurpc.invoker;
+
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+//服务调用器（服务端使用）
+//持有服务实例，以及该服务所有公共方法预先解析好的调用表
+public class ServiceInvoker {
+
+    //服务实例
+    @Getter
+    private final Object serviceInstance;
+
+    //方法调用表，方法名称 -> 同名方法（重载）的调用器
+    private final Map<String, MethodInvoker[]> methodInvokerMap;
+
+    public ServiceInvoker(Object serviceInstance) {
+        this.serviceInstance = serviceInstance;
+        this.methodInvokerMap = buildMethodInvokerMap(serviceInstance);
+    }
+
+    //根据方法名称和参数类型获取调用器，找不到时返回 null
+    public MethodInvoker getMethodInvoker(String methodName, Class<?>[] parameterTypes) {
+        MethodInvoker[] methodInvokers = methodInvokerMap.get(methodName);
+        if (methodInvokers == null) {
+            return null;
+        }
+        for (MethodInvoker methodInvoker : methodInvokers) {
+            if (methodInvoker.matches(parameterTypes)) {
+                return methodInvoker;
+            }
+        }
+        return null;
+    }
+
+    //服务实现类
+    public Class<?> getImplClass() {
+        return serviceInstance.getClass();
+    }
+
+    //解析服务实例的所有公共方法（排除 Object 的方法、静态方法和桥接方法）
+    private static Map<String, MethodInvoker[]> buildMethodInvokerMap(Object serviceInstance) {
+        Map<String, List<MethodInvoker>> invokerListMap = new HashMap<>();
+        for (Method method : serviceInstance.getClass().getMethods()) {
+            if (method.getDeclaringClass() == Object.class
+                    || Modifier.isStatic(method.getModifiers())
+                    || method.isBridge()) {
+                continue;
+            }
+            invokerListMap.computeIfAbsent(method.getName(), key -> new ArrayList<>())
+                    .add(new MethodInvoker(serviceInstance, method));
+        }
+        Map<String, MethodInvoker[]> methodInvokerMap = new HashMap<>();
+        invokerListMap.forEach((methodName, invokerList) ->
+                methodInvokerMap.put(methodName, invokerList.toArray(new MethodInvoker[0])));
+        return methodInvokerMap;
+    }
+}
@@ -1,50 +1,200 @@
 package com.yupi.yurpc.loadbalancer;
 
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.yupi.yurpc.metrics.NodeMetrics;
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 //一致性哈希负载均衡器
+//每个服务一个不可变的哈希环，只在服务节点列表变化时重建，选择时在有序数组上二分查找
+//路由键优先使用调用参数中的哈希键（见 RpcReferenceConfig.hashKeyArgs），未配置时使用方法名
+//请求参数中带有负载上限系数（来自 RpcConfig.consistentHashLoadFactor）时，进行中请求数超过平均值 × 系数的节点被跳过，热点键顺延到环上的下一个节点
 public class ConsistentHashLoadBalancer implements LoadBalancer {
 
-    //一致性 Hash 环，存放虚拟节点
-    private final TreeMap<Integer, ServiceMetaInfo> virtualNodes = new TreeMap<>();
+    //请求参数中的路由键
+    public static final String HASH_KEY = "hashKey";
+
+    //请求参数中的方法名（未配置路由键时使用）
+    public static final String METHOD_NAME = "methodName";
+
+    //请求参数中的负载上限系数（没有或不大于 0 时不限制）
+    public static final String LOAD_FACTOR = "loadFactor";
 
     //虚拟节点数
     private static final int VIRTUAL_NODE_NUM = 100;
 
+    //服务键名 -> 哈希环
+    private final Map<String, HashRing> ringMap = new ConcurrentHashMap<>();
+
     @Override
     public ServiceMetaInfo select(Map<String, Object> requestParams, List<ServiceMetaInfo> serviceMetaInfoList) {
         if (serviceMetaInfoList.isEmpty()) {
             return null;
         }
+        if (serviceMetaInfoList.size() == 1) {
+            return serviceMetaInfoList.get(0);
+        }
+        HashRing ring = getRing(serviceMetaInfoList);
+        long hash = getHash(getRoutingKey(requestParams));
+        Object loadFactorParam = requestParams.get(LOAD_FACTOR);
+        double loadFactor = loadFactorParam instanceof Number ? ((Number) loadFactorParam).doubleValue() : 0;
+        return loadFactor > 0 ? ring.selectBounded(hash, loadFactor) : ring.select(hash);
+    }
+
+    //获取服务的哈希环，节点列表变化时重建
+    private HashRing getRing(List<ServiceMetaInfo> serviceMetaInfoList) {
+        String serviceKey = serviceMetaInfoList.get(0).getServiceKey();
+        HashRing ring = ringMap.get(serviceKey);
+        // 注册中心缓存未变化时返回的是同一个列表对象，直接命中
+        if (ring != null && ring.source == serviceMetaInfoList) {
+            return ring;
+        }
+        Set<String> nodeKeys = getNodeKeys(serviceMetaInfoList);
+        if (ring == null || !ring.nodeKeys.equals(nodeKeys)) {
+            ring = new HashRing(serviceMetaInfoList, nodeKeys);
+        } else {
+            ring = ring.withSource(serviceMetaInfoList);
+        }
+        ringMap.put(serviceKey, ring);
+        return ring;
+    }
 
-        // 构建虚拟节点环
+    //路由键（Maglev 负载均衡器使用相同的规则）
+    static String getRoutingKey(Map<String, Object> requestParams) {
+        Object key = requestParams.get(HASH_KEY);
+        if (key == null) {
+            key = requestParams.get(METHOD_NAME);
+        }
+        return String.valueOf(key);
+    }
+
+    //节点键（host:port）集合
+    static Set<String> getNodeKeys(List<ServiceMetaInfo> serviceMetaInfoList) {
+        Set<String> nodeKeys = new HashSet<>();
         for (ServiceMetaInfo serviceMetaInfo : serviceMetaInfoList) {
-            for (int i = 0; i < VIRTUAL_NODE_NUM; i++) {
-                int hash = getHash(serviceMetaInfo.getServiceAddress() + "#" + i);
-                virtualNodes.put(hash, serviceMetaInfo);
+            nodeKeys.add(NodeMetricsRegistry.getAddress(serviceMetaInfo));
+        }
+        return nodeKeys;
+    }
+
+    //Hash 算法（MurmurHash3，分布均匀）
+    private static long getHash(String key) {
+        return MurmurHash.hash64(key);
+    }
+
+    //不可变的哈希环
+    private static class HashRing {
+
+        //构建哈希环使用的节点列表
+        private final List<ServiceMetaInfo> source;
+
+        //节点键集合，用于判断节点列表是否变化
+        private final Set<String> nodeKeys;
+
+        //虚拟节点的哈希值（升序）
+        private final long[] hashes;
+
+        //虚拟节点对应的服务节点
+        private final ServiceMetaInfo[] nodes;
+
+        //去重后的服务节点
+        private final ServiceMetaInfo[] distinctNodes;
+
+        //虚拟节点对应的节点指标（与 nodes 一一对应），选择时不再逐个按地址查找
+        private final NodeMetrics[] nodeMetrics;
+
+        //去重后的服务节点的指标（与 distinctNodes 一一对应）
+        private final NodeMetrics[] distinctNodeMetrics;
+
+        HashRing(List<ServiceMetaInfo> serviceMetaInfoList, Set<String> nodeKeys) {
+            this.source = serviceMetaInfoList;
+            this.nodeKeys = nodeKeys;
+            TreeMap<Long, ServiceMetaInfo> virtualNodes = new TreeMap<>();
+            Map<String, ServiceMetaInfo> distinct = new LinkedHashMap<>();
+            for (ServiceMetaInfo serviceMetaInfo : serviceMetaInfoList) {
+                String nodeKey = NodeMetricsRegistry.getAddress(serviceMetaInfo);
+                distinct.putIfAbsent(nodeKey, serviceMetaInfo);
+                for (int i = 0; i < VIRTUAL_NODE_NUM; i++) {
+                    virtualNodes.put(getHash(nodeKey + "#" + i), serviceMetaInfo);
+                }
+            }
+            this.hashes = new long[virtualNodes.size()];
+            this.nodes = new ServiceMetaInfo[virtualNodes.size()];
+            int index = 0;
+            for (Map.Entry<Long, ServiceMetaInfo> entry : virtualNodes.entrySet()) {
+                hashes[index] = entry.getKey();
+                nodes[index] = entry.getValue();
+                index++;
             }
+            this.distinctNodes = distinct.values().toArray(new ServiceMetaInfo[0]);
+            this.nodeMetrics = getMetrics(nodes);
+            this.distinctNodeMetrics = getMetrics(distinctNodes);
         }
 
-        // 获取调用请求的 hash 值
-        int hash = getHash(requestParams);
+        private HashRing(HashRing ring, List<ServiceMetaInfo> source) {
+            this.source = source;
+            this.nodeKeys = ring.nodeKeys;
+            this.hashes = ring.hashes;
+            this.nodes = ring.nodes;
+            this.distinctNodes = ring.distinctNodes;
+            // 节点下线再上线后指标对象会重建，替换列表时重新获取
+            this.nodeMetrics = getMetrics(nodes);
+            this.distinctNodeMetrics = getMetrics(distinctNodes);
+        }
 
-        // 选择最接近且大于等于调用请求 hash 值的虚拟节点
-        Map.Entry<Integer, ServiceMetaInfo> entry = virtualNodes.ceilingEntry(hash);
-        if (entry == null) {
-            // 如果没有大于等于调用请求 hash 值的虚拟节点，则返回环首部的节点
-            entry = virtualNodes.firstEntry();
+        //获取各个节点的指标
+        private static NodeMetrics[] getMetrics(ServiceMetaInfo[] serviceMetaInfos) {
+            NodeMetrics[] metrics = new NodeMetrics[serviceMetaInfos.length];
+            for (int i = 0; i < serviceMetaInfos.length; i++) {
+                metrics[i] = NodeMetricsRegistry.getMetrics(serviceMetaInfos[i]);
+            }
+            return metrics;
         }
-        return entry.getValue();
-    }
 
+        //节点未变化，只替换列表对象（下次同一个列表对象直接命中）
+        HashRing withSource(List<ServiceMetaInfo> source) {
+            return new HashRing(this, source);
+        }
+
+        //选择最接近且大于等于哈希值的虚拟节点，没有时回到环首部
+        ServiceMetaInfo select(long hash) {
+            return nodes[ceilingIndex(hash)];
+        }
 
-    //Hash 算法，可自行实现
-    private int getHash(Object key) {
-        return key.hashCode();
+        //带负载上限的选择：从对应的虚拟节点开始顺时针查找第一个进行中请求数未超过上限的节点
+        ServiceMetaInfo selectBounded(long hash, double loadFactor) {
+            long totalActive = 0;
+            for (NodeMetrics metrics : distinctNodeMetrics) {
+                totalActive += metrics.getActive();
+            }
+            // 上限 = ceil((总请求数 + 1) × 系数 / 节点数)，保证至少有一个节点未超过上限
+            long capacity = (long) Math.ceil((totalActive + 1) * loadFactor / distinctNodes.length);
+            int start = ceilingIndex(hash);
+            for (int i = 0; i < nodes.length; i++) {
+                int index = (start + i) % nodes.length;
+                if (nodeMetrics[index].getActive() < capacity) {
+                    return nodes[index];
+                }
+            }
+            return nodes[start];
+        }
+
+        private int ceilingIndex(long hash) {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index == hashes.length ? 0 : index;
+        }
     }
 }
@@ -0,0 +1,41 @@
+package com.yupi.yurpc.loadbalancer;
+
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+//最少活跃请求负载均衡器
+//选择进行中请求数最少的节点（慢节点的请求堆积得多，自然分到更少的新请求），请求数相同的节点之间随机选择
+//进行中的请求数由客户端在发出请求和请求结束时更新（见 NodeMetrics）
+public class LeastActiveLoadBalancer implements LoadBalancer {
+
+    @Override
+    public ServiceMetaInfo select(Map<String, Object> requestParams, List<ServiceMetaInfo> serviceMetaInfoList) {
+        int size = serviceMetaInfoList.size();
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            return serviceMetaInfoList.get(0);
+        }
+        ServiceMetaInfo selected = null;
+        long leastActive = Long.MAX_VALUE;
+        // 请求数最少的节点个数，用于在这些节点中等概率地随机选择一个（蓄水池抽样）
+        int leastCount = 0;
+        for (ServiceMetaInfo serviceMetaInfo : serviceMetaInfoList) {
+            long active = NodeMetricsRegistry.getMetrics(serviceMetaInfo).getActive();
+            if (active < leastActive) {
+                leastActive = active;
+                leastCount = 1;
+                selected = serviceMetaInfo;
+            } else if (active == leastActive && ThreadLocalRandom.current().nextInt(++leastCount) == 0) {
+                selected = serviceMetaInfo;
+            }
+        }
+        return selected;
+    }
+}
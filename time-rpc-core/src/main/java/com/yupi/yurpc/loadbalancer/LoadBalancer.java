@@ -11,4 +11,9 @@ public interface LoadBalancer {
 
     //选择服务调用，requestParams -> 请求参数,serviceMetaInfoList -> 可用服务列表
     ServiceMetaInfo select(Map<String, Object> requestParams, List<ServiceMetaInfo> serviceMetaInfoList);
+
+    //调用结束后的反馈（每次请求完成时调用，包括失败和超时），latencyNanos -> 请求耗时，success -> 是否收到响应
+    //需要根据调用结果调整选择的负载均衡器覆盖此方法，实现需要线程安全且足够轻量
+    default void onResponse(ServiceMetaInfo serviceMetaInfo, long latencyNanos, boolean success) {
+    }
 }
@@ -11,4 +11,13 @@ public interface LoadBalancerKeys {
 
     String CONSISTENT_HASH = "consistentHash";
 
+    //最少活跃请求
+    String LEAST_ACTIVE = "leastActive";
+
+    //Peak EWMA（延迟感知，两次随机选择）
+    String PEAK_EWMA = "peakEwma";
+
+    //Maglev 哈希
+    String MAGLEV = "maglev";
+
 }
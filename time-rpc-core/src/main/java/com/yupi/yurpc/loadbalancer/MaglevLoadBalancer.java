@@ -0,0 +1,141 @@
+package com.yupi.yurpc.loadbalancer;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+//Maglev 哈希负载均衡器
+//每个服务一张大小为质数的查找表（int[]，存放节点下标），只在服务节点列表变化时重建
+//选择时对路由键哈希后直接取模查表，耗时与节点数无关；节点变化时只有少量表项改变归属，键的迁移接近最少
+//路由键规则与一致性哈希相同（调用参数中的哈希键，未配置时使用方法名）
+public class MaglevLoadBalancer implements LoadBalancer {
+
+    //查找表大小候选（质数），取不小于 节点数 × MIN_ENTRIES_PER_NODE 的最小值，保证各节点分到的表项足够均匀
+    private static final int[] TABLE_SIZES = {65537, 131071, 262139, 524287, 1048573, 2097143, 4194301};
+
+    //每个节点至少分到的表项数
+    private static final int MIN_ENTRIES_PER_NODE = 100;
+
+    //服务键名 -> 查找表
+    private final Map<String, LookupTable> tableMap = new ConcurrentHashMap<>();
+
+    @Override
+    public ServiceMetaInfo select(Map<String, Object> requestParams, List<ServiceMetaInfo> serviceMetaInfoList) {
+        if (serviceMetaInfoList.isEmpty()) {
+            return null;
+        }
+        if (serviceMetaInfoList.size() == 1) {
+            return serviceMetaInfoList.get(0);
+        }
+        LookupTable table = getTable(serviceMetaInfoList);
+        return table.select(MurmurHash.hash64(ConsistentHashLoadBalancer.getRoutingKey(requestParams)));
+    }
+
+    //获取服务的查找表，节点列表变化时重建
+    private LookupTable getTable(List<ServiceMetaInfo> serviceMetaInfoList) {
+        String serviceKey = serviceMetaInfoList.get(0).getServiceKey();
+        LookupTable table = tableMap.get(serviceKey);
+        // 注册中心缓存未变化时返回的是同一个列表对象，直接命中
+        if (table != null && table.source == serviceMetaInfoList) {
+            return table;
+        }
+        Set<String> nodeKeys = ConsistentHashLoadBalancer.getNodeKeys(serviceMetaInfoList);
+        if (table == null || !table.nodeKeys.equals(nodeKeys)) {
+            table = new LookupTable(serviceMetaInfoList, nodeKeys);
+        } else {
+            table = table.withSource(serviceMetaInfoList);
+        }
+        tableMap.put(serviceKey, table);
+        return table;
+    }
+
+    //查找表大小
+    private static int getTableSize(int nodeCount) {
+        for (int tableSize : TABLE_SIZES) {
+            if (tableSize >= (long) nodeCount * MIN_ENTRIES_PER_NODE) {
+                return tableSize;
+            }
+        }
+        return TABLE_SIZES[TABLE_SIZES.length - 1];
+    }
+
+    //不可变的查找表
+    private static class LookupTable {
+
+        //构建查找表使用的节点列表
+        private final List<ServiceMetaInfo> source;
+
+        //节点键集合，用于判断节点列表是否变化
+        private final Set<String> nodeKeys;
+
+        //节点（按节点键排序，与注册中心返回的顺序无关，不同消费端构建出相同的表）
+        private final ServiceMetaInfo[] nodes;
+
+        //表项 -> 节点下标
+        private final int[] entries;
+
+        LookupTable(List<ServiceMetaInfo> serviceMetaInfoList, Set<String> nodeKeys) {
+            this.source = serviceMetaInfoList;
+            this.nodeKeys = nodeKeys;
+            TreeMap<String, ServiceMetaInfo> sortedNodes = new TreeMap<>();
+            for (ServiceMetaInfo serviceMetaInfo : serviceMetaInfoList) {
+                sortedNodes.putIfAbsent(NodeMetricsRegistry.getAddress(serviceMetaInfo), serviceMetaInfo);
+            }
+            this.nodes = sortedNodes.values().toArray(new ServiceMetaInfo[0]);
+            this.entries = populate(sortedNodes.keySet().toArray(new String[0]), getTableSize(nodes.length));
+        }
+
+        private LookupTable(LookupTable table, List<ServiceMetaInfo> source) {
+            this.source = source;
+            this.nodeKeys = table.nodeKeys;
+            this.nodes = table.nodes;
+            this.entries = table.entries;
+        }
+
+        //节点未变化，只替换列表对象（下次同一个列表对象直接命中）
+        LookupTable withSource(List<ServiceMetaInfo> source) {
+            return new LookupTable(this, source);
+        }
+
+        ServiceMetaInfo select(long hash) {
+            return nodes[entries[(int) Math.floorMod(hash, (long) entries.length)]];
+        }
+
+        //填充查找表：每个节点按自己的排列（offset + j × skip）轮流认领第一个空闲的表项，直到填满
+        private static int[] populate(String[] nodeKeys, int tableSize) {
+            int nodeCount = nodeKeys.length;
+            long[] offsets = new long[nodeCount];
+            long[] skips = new long[nodeCount];
+            long[] next = new long[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                offsets[i] = Math.floorMod(MurmurHash.hash64(nodeKeys[i]), (long) tableSize);
+                skips[i] = Math.floorMod(MurmurHash.hash64(nodeKeys[i] + "#skip"), (long) (tableSize - 1)) + 1;
+            }
+            int[] entries = new int[tableSize];
+            Arrays.fill(entries, -1);
+            int filled = 0;
+            while (true) {
+                for (int i = 0; i < nodeCount; i++) {
+                    int entry = (int) ((offsets[i] + next[i] * skips[i]) % tableSize);
+                    while (entries[entry] >= 0) {
+                        next[i]++;
+                        entry = (int) ((offsets[i] + next[i] * skips[i]) % tableSize);
+                    }
+                    entries[entry] = i;
+                    next[i]++;
+                    if (++filled == tableSize) {
+                        return entries;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.yupi.yurpc.loadbalancer;
+
+import com.yupi.yurpc.metrics.NodeMetrics;
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+//Peak EWMA 负载均衡器（两次随机选择，P2C）
+//每个节点维护一个延迟的峰值指数加权平均：新样本高于当前值时直接取新样本（对 GC 停顿、邻居干扰等突发变慢立即生效），
+//低于当前值时按距离上次样本的时间衰减平滑，没有新样本时估计值也会随时间衰减，变慢过的节点之后还能重新得到请求
+//节点负载 = 延迟估计 ×（进行中的请求数 + 1），每次随机取两个节点，选择负载较低的一个
+public class PeakEwmaLoadBalancer implements LoadBalancer {
+
+    //衰减时间常数（单位纳秒），约等于估计值“记住”一个样本的时间
+    private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    //失败惩罚：失败的调用按 max(实际耗时, 当前估计 × 倍数, 最小惩罚) 计入
+    //快速失败的节点（连接被拒绝、解码错误）耗时很短，按实际耗时计入会让它看起来最快，吸走所有请求
+    private static final double FAILURE_PENALTY_FACTOR = 10;
+
+    private static final long FAILURE_PENALTY_MIN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    //节点地址 -> 延迟估计
+    private final Map<String, PeakEwma> peakEwmaMap = new ConcurrentHashMap<>();
+
+    public PeakEwmaLoadBalancer() {
+        // 节点下线时丢弃它的延迟估计
+        NodeMetricsRegistry.addRemovalListener(peakEwmaMap::remove);
+    }
+
+    @Override
+    public ServiceMetaInfo select(Map<String, Object> requestParams, List<ServiceMetaInfo> serviceMetaInfoList) {
+        int size = serviceMetaInfoList.size();
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            return serviceMetaInfoList.get(0);
+        }
+        // 随机选择两个不同的节点
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceMetaInfo firstNode = serviceMetaInfoList.get(first);
+        ServiceMetaInfo secondNode = serviceMetaInfoList.get(second);
+        long now = System.nanoTime();
+        return getLoad(firstNode, now) <= getLoad(secondNode, now) ? firstNode : secondNode;
+    }
+
+    @Override
+    public void onResponse(ServiceMetaInfo serviceMetaInfo, long latencyNanos, boolean success) {
+        PeakEwma peakEwma = getPeakEwma(NodeMetricsRegistry.getAddress(serviceMetaInfo));
+        long now = System.nanoTime();
+        if (success) {
+            peakEwma.observe(latencyNanos, now);
+            return;
+        }
+        // 失败（包括超时）记为惩罚值，出故障的节点估计值升高，分到的请求随之减少
+        double penalty = Math.max(Math.max(latencyNanos, peakEwma.get(now) * FAILURE_PENALTY_FACTOR), FAILURE_PENALTY_MIN_NANOS);
+        peakEwma.observe((long) penalty, now);
+    }
+
+    //节点负载
+    private double getLoad(ServiceMetaInfo serviceMetaInfo, long now) {
+        String address = NodeMetricsRegistry.getAddress(serviceMetaInfo);
+        NodeMetrics nodeMetrics = NodeMetricsRegistry.getMetrics(address);
+        double cost = getPeakEwma(address).get(now);
+        if (cost == 0) {
+            // 还没有调用样本时，用心跳 RTT 作为初始估计
+            cost = nodeMetrics.getRttNanos();
+        }
+        return (cost + 1) * (nodeMetrics.getActive() + 1);
+    }
+
+    private PeakEwma getPeakEwma(String address) {
+        return peakEwmaMap.computeIfAbsent(address, key -> new PeakEwma());
+    }
+
+    //单个节点的延迟峰值指数加权平均
+    private static class PeakEwma {
+
+        //延迟估计（单位纳秒）
+        private double cost;
+
+        //上次更新的时间
+        private long stamp = System.nanoTime();
+
+        //记录一个样本
+        synchronized void observe(long latencyNanos, long now) {
+            if (latencyNanos > cost) {
+                cost = latencyNanos;
+            } else {
+                double weight = weight(now);
+                cost = cost * weight + latencyNanos * (1 - weight);
+            }
+            stamp = now;
+        }
+
+        //当前的延迟估计（距上次样本越久越低）
+        synchronized double get(long now) {
+            return cost * weight(now);
+        }
+
+        //旧值的权重，距上次样本越久越小
+        private double weight(long now) {
+            return Math.exp(-(double) Math.max(0, now - stamp) / DECAY_NANOS);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.yupi.yurpc.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+//消息体压缩指标（进程内累计值）
+public class CompressionMetrics {
+
+    //压缩后发送的消息数
+    private static final LongAdder COMPRESSED_MESSAGES = new LongAdder();
+
+    //超过阈值但压缩无收益、按原始数据发送的消息数
+    private static final LongAdder INEFFECTIVE_MESSAGES = new LongAdder();
+
+    //压缩前的字节数
+    private static final LongAdder RAW_BYTES = new LongAdder();
+
+    //压缩后的字节数
+    private static final LongAdder COMPRESSED_BYTES = new LongAdder();
+
+    //压缩耗时（单位纳秒）
+    private static final LongAdder COMPRESS_NANOS = new LongAdder();
+
+    //解压的消息数
+    private static final LongAdder DECOMPRESSED_MESSAGES = new LongAdder();
+
+    //解压耗时（单位纳秒，解压与反序列化是流式进行的，包含反序列化耗时）
+    private static final LongAdder DECOMPRESS_NANOS = new LongAdder();
+
+    //记录一次压缩
+    public static void recordCompress(int rawBytes, int compressedBytes, long nanos) {
+        COMPRESS_NANOS.add(nanos);
+        if (compressedBytes >= rawBytes) {
+            INEFFECTIVE_MESSAGES.increment();
+            return;
+        }
+        COMPRESSED_MESSAGES.increment();
+        RAW_BYTES.add(rawBytes);
+        COMPRESSED_BYTES.add(compressedBytes);
+    }
+
+    //记录一次解压
+    public static void recordDecompress(long nanos) {
+        DECOMPRESSED_MESSAGES.increment();
+        DECOMPRESS_NANOS.add(nanos);
+    }
+
+    public static long getCompressedMessages() {
+        return COMPRESSED_MESSAGES.sum();
+    }
+
+    public static long getIneffectiveMessages() {
+        return INEFFECTIVE_MESSAGES.sum();
+    }
+
+    public static long getRawBytes() {
+        return RAW_BYTES.sum();
+    }
+
+    public static long getCompressedBytes() {
+        return COMPRESSED_BYTES.sum();
+    }
+
+    //压缩率（压缩后字节数 / 压缩前字节数，没有样本时为 1）
+    public static double getCompressionRatio() {
+        long rawBytes = RAW_BYTES.sum();
+        return rawBytes == 0 ? 1.0 : (double) COMPRESSED_BYTES.sum() / rawBytes;
+    }
+
+    public static long getCompressNanos() {
+        return COMPRESS_NANOS.sum();
+    }
+
+    public static long getDecompressedMessages() {
+        return DECOMPRESSED_MESSAGES.sum();
+    }
+
+    public static long getDecompressNanos() {
+        return DECOMPRESS_NANOS.sum();
+    }
+}
@@ -0,0 +1,59 @@
+package com.yupi.yurpc.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+//服务节点指标（消费端视角）
+//由连接层采集，供负载均衡器等组件读取
+public class NodeMetrics {
+
+    //RTT 指数加权平均的权重（新样本占比）
+    private static final double RTT_EWMA_ALPHA = 0.2;
+
+    //节点地址（host:port）
+    @Getter
+    private final String address;
+
+    //RTT 指数加权平均值（单位纳秒，0 表示还没有样本）
+    private volatile long rttNanos;
+
+    //最近一次 RTT（单位纳秒）
+    @Getter
+    private volatile long lastRttNanos;
+
+    //进行中的请求数（分段计数，多个调用线程同时更新时不会争用同一个变量）
+    private final LongAdder activeRequests = new LongAdder();
+
+    public NodeMetrics(String address) {
+        this.address = address;
+    }
+
+    //记录一次心跳 RTT 样本
+    public void recordRtt(long nanos) {
+        lastRttNanos = nanos;
+        long current = rttNanos;
+        rttNanos = current == 0 ? nanos : (long) (current + (nanos - current) * RTT_EWMA_ALPHA);
+    }
+
+    //RTT 指数加权平均值（单位纳秒，0 表示还没有样本）
+    public long getRttNanos() {
+        return rttNanos;
+    }
+
+    //发出一个请求
+    public void incrementActive() {
+        activeRequests.increment();
+    }
+
+    //一个请求结束（收到响应、失败或超时）
+    public void decrementActive() {
+        activeRequests.decrement();
+    }
+
+    //进行中的请求数
+    public long getActive() {
+        return activeRequests.sum();
+    }
+}
@@ -0,0 +1,88 @@
+package com.yupi.yurpc.metrics;
+
+import com.yupi.yurpc.model.ServiceMetaInfo;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+
+//服务节点指标注册中心（本地缓存）
+//同一地址上可能部署了多个服务，只有指向该地址的服务节点全部从注册中心下线后才移除，
+//并通知按节点地址保存状态的组件（连接池、负载均衡器）一起清理，避免节点上下线后无限增长
+public class NodeMetricsRegistry {
+
+    //节点地址（host:port） -> 节点指标
+    private static final Map<String, NodeMetrics> METRICS_MAP = new ConcurrentHashMap<>();
+
+    //节点地址 -> 仍指向该地址的服务节点 key（只在 compute 中读写）
+    private static final Map<String, Set<String>> SERVICE_NODE_MAP = new ConcurrentHashMap<>();
+
+    //节点移除监听器，参数为节点地址
+    private static final List<Consumer<String>> REMOVAL_LISTENERS = new CopyOnWriteArrayList<>();
+
+    //获取节点指标，不存在时创建
+    public static NodeMetrics getMetrics(String address) {
+        return METRICS_MAP.computeIfAbsent(address, NodeMetrics::new);
+    }
+
+    //获取服务节点的指标
+    public static NodeMetrics getMetrics(ServiceMetaInfo serviceMetaInfo) {
+        return getMetrics(getAddress(serviceMetaInfo));
+    }
+
+    //节点地址，与连接池使用同一个键
+    public static String getAddress(ServiceMetaInfo serviceMetaInfo) {
+        return serviceMetaInfo.getServiceHost() + ":" + serviceMetaInfo.getServicePort();
+    }
+
+    //从服务节点 key（.../服务键/host:port）中解析节点地址
+    public static String getAddress(String serviceNodeKey) {
+        return serviceNodeKey.substring(serviceNodeKey.lastIndexOf('/') + 1);
+    }
+
+    //注册节点移除监听器
+    public static void addRemovalListener(Consumer<String> listener) {
+        REMOVAL_LISTENERS.add(listener);
+    }
+
+    //记录指向节点地址的服务节点（注册中心发现节点时调用）
+    public static void addServiceNode(String serviceNodeKey) {
+        SERVICE_NODE_MAP.compute(getAddress(serviceNodeKey), (address, serviceNodeKeys) -> {
+            if (serviceNodeKeys == null) {
+                serviceNodeKeys = new HashSet<>();
+            }
+            serviceNodeKeys.add(serviceNodeKey);
+            return serviceNodeKeys;
+        });
+    }
+
+    //服务节点下线（注册中心删除节点 key 时调用），该地址上已经没有其他服务时移除节点
+    public static void removeServiceNode(String serviceNodeKey) {
+        String address = getAddress(serviceNodeKey);
+        boolean[] removed = new boolean[1];
+        SERVICE_NODE_MAP.computeIfPresent(address, (key, serviceNodeKeys) -> {
+            serviceNodeKeys.remove(serviceNodeKey);
+            if (!serviceNodeKeys.isEmpty()) {
+                return serviceNodeKeys;
+            }
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            remove(address);
+        }
+    }
+
+    //移除节点指标，并通知监听器清理该节点的状态
+    public static void remove(String address) {
+        METRICS_MAP.remove(address);
+        for (Consumer<String> listener : REMOVAL_LISTENERS) {
+            listener.accept(address);
+        }
+    }
+}
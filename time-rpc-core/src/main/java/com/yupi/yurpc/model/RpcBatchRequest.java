@@ -0,0 +1,19 @@
+package com.yupi.yurpc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+//批量请求（同一服务方法的多个小请求合并为一个消息帧）
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RpcBatchRequest implements Serializable {
+
+    //请求列表
+    private List<RpcRequest> requests;
+
+}
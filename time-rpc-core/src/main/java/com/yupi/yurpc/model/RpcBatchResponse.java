@@ -0,0 +1,19 @@
+package com.yupi.yurpc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+//批量响应（与批量请求中的请求一一对应，顺序相同）
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RpcBatchResponse implements Serializable {
+
+    //响应列表
+    private List<RpcResponse> responses;
+
+}
@@ -30,4 +30,8 @@ public class RpcRequest implements Serializable {
 
     //参数列表
     private Object[] args;
+
+    //方法 id（协议 v3，为空表示未使用方法 id）
+    //携带完整签名时表示在当前连接上定义该 id，只携带 id 时服务端根据 id 还原服务名、方法名等信息
+    private Integer methodId;
 }
@@ -21,6 +21,12 @@ public class ServiceMetaInfo {
     //服务端口号
     private Integer servicePort;
 
+    //服务提供者所在主机的标识
+    private String hostId;
+
+    //服务提供者的 Unix 域套接字路径（为空表示不支持），与消费者在同一主机上时优先使用
+    private String domainSocketPath;
+
     //服务分组（暂未实现）
     private String serviceGroup = "default";
 
@@ -0,0 +1,59 @@
+package com.yupi.yurpc.protocol;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.io.InputStream;
+
+
+//Buffer 输入流
+//直接从 Buffer 的指定区间读取数据，反序列化时不需要先把消息体拷贝成一个新的字节数组
+public class BufferInputStream extends InputStream {
+
+    private final Buffer buffer;
+
+    //当前读取位置
+    private int position;
+
+    //读取结束位置（不包含）
+    private final int end;
+
+    public BufferInputStream(Buffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.position = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read() {
+        if (position >= end) {
+            return -1;
+        }
+        return buffer.getByte(position++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        int readLength = Math.min(len, end - position);
+        buffer.getBytes(position, position + readLength, b, off);
+        position += readLength;
+        return readLength;
+    }
+
+    @Override
+    public long skip(long n) {
+        int skipLength = (int) Math.max(0, Math.min(n, end - position));
+        position += skipLength;
+        return skipLength;
+    }
+
+    @Override
+    public int available() {
+        return end - position;
+    }
+}
@@ -0,0 +1,27 @@
+package com.yupi.yurpc.protocol;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.io.OutputStream;
+
+
+//Buffer 输出流
+//序列化器直接把数据追加写入 Buffer，不需要先生成中间字节数组再拷贝
+public class BufferOutputStream extends OutputStream {
+
+    private final Buffer buffer;
+
+    public BufferOutputStream(Buffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+        buffer.appendByte((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        buffer.appendBytes(b, off, len);
+    }
+}
@@ -0,0 +1,38 @@
+package com.yupi.yurpc.protocol;
+
+import com.yupi.yurpc.model.RpcRequest;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+
+//方法签名（协议 v3 中与方法 id 一一对应）
+@Data
+@AllArgsConstructor
+public class MethodSignature {
+
+    //服务名称
+    private final String serviceName;
+
+    //服务版本
+    private final String serviceVersion;
+
+    //方法名称
+    private final String methodName;
+
+    //参数类型列表
+    private final Class<?>[] parameterTypes;
+
+    //从请求中获取方法签名
+    public static MethodSignature of(RpcRequest rpcRequest) {
+        return new MethodSignature(rpcRequest.getServiceName(), rpcRequest.getServiceVersion(),
+                rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
+    }
+
+    //把方法签名填充到只带有方法 id 的请求中
+    public void fill(RpcRequest rpcRequest) {
+        rpcRequest.setServiceName(serviceName);
+        rpcRequest.setServiceVersion(serviceVersion);
+        rpcRequest.setMethodName(methodName);
+        rpcRequest.setParameterTypes(parameterTypes);
+    }
+}
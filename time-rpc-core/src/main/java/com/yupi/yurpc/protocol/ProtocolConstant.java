@@ -5,11 +5,31 @@ package com.yupi.yurpc.protocol;
 public interface ProtocolConstant {
 
     //消息头长度
-    int MESSAGE_HEADER_LENGTH = 17;
+    int MESSAGE_HEADER_LENGTH = 21;
 
     //协议魔数
     byte PROTOCOL_MAGIC = 0x1;
 
-    //协议版本号
-    byte PROTOCOL_VERSION = 0x1;
+    //协议版本号，消息头格式或消息语义变化时递增
+    //v3：同一个连接上，方法第一次调用时携带完整签名并分配方法 id，之后的请求只携带方法 id 和参数；支持单向请求和批量请求
+    byte PROTOCOL_VERSION = 0x3;
+
+    //协议版本号 v2：消息头增加 4 字节的超时时间（21 字节），不支持方法 id
+    //当前支持的最低版本，客户端用该版本发送握手心跳，服务端在心跳响应中返回自己支持的版本
+    byte PROTOCOL_VERSION_2 = 0x2;
+
+    //协议版本号 v1：17 字节的消息头（没有超时时间），与 v2 起的消息头不兼容，收到时直接拒绝
+    byte PROTOCOL_VERSION_1 = 0x1;
+
+    //序列化器字节：低 4 位为序列化器
+    int SERIALIZER_MASK = 0x0F;
+
+    //序列化器字节：第 4、5 位为消息体使用的压缩器（0 表示未压缩）
+    int COMPRESSOR_SHIFT = 4;
+
+    //序列化器字节：第 6、7 位为发送方可以接受的压缩器（0 表示不接受压缩的响应）
+    int ACCEPT_COMPRESSOR_SHIFT = 6;
+
+    //压缩器占用的位
+    int COMPRESSOR_MASK = 0x03;
 }
@@ -28,6 +28,13 @@ public class ProtocolMessage<T> {
         //序列化器
         private byte serializer;
 
+        //压缩器（编码时表示希望使用的压缩器，消息体超过阈值才会压缩；解码时表示消息体实际使用的压缩器）
+        //与序列化器共用一个字节（高 4 位），不启用压缩时高 4 位为 0
+        private byte compressor;
+
+        //发送方可以接受的压缩器，服务端据此决定是否压缩响应
+        private byte acceptCompressor;
+
         //消息类型（请求 / 响应）
         private byte type;
 
@@ -37,6 +44,9 @@ public class ProtocolMessage<T> {
         //请求 id
         private long requestId;
 
+        //请求剩余超时时间（单位毫秒，0 表示不限制），服务端据此跳过调用方已经放弃等待的请求
+        private int timeout;
+
         //消息体长度
         private int bodyLength;
     }
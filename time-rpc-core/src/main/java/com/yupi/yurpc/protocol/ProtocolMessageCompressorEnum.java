@@ -0,0 +1,43 @@
+package com.yupi.yurpc.protocol;
+
+import cn.hutool.core.util.ObjectUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+
+//协议消息的压缩器枚举（key 写入消息头，只有 2 位，取值 0 ~ 3）
+@Getter
+@AllArgsConstructor
+public enum ProtocolMessageCompressorEnum {
+
+    NONE(0, "none"),
+    DEFLATE(1, "deflate"),
+    GZIP(2, "gzip");
+
+    private final int key;
+
+    private final String value;
+
+    //根据key获取枚举
+    public static ProtocolMessageCompressorEnum getEnumByKey(int key) {
+        for (ProtocolMessageCompressorEnum anEnum : ProtocolMessageCompressorEnum.values()) {
+            if (anEnum.key == key) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    //根据value获取枚举
+    public static ProtocolMessageCompressorEnum getEnumByValue(String value) {
+        if (ObjectUtil.isEmpty(value)) {
+            return null;
+        }
+        for (ProtocolMessageCompressorEnum anEnum : ProtocolMessageCompressorEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
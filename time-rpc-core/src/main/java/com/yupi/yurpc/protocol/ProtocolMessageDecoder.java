@@ -1,6 +1,10 @@
 package com.yupi.yurpc.protocol;
 
 import cn.hutool.core.bean.BeanUtil;
+import com.yupi.yurpc.compressor.CompressorFactory;
+import com.yupi.yurpc.metrics.CompressionMetrics;
+import com.yupi.yurpc.model.RpcBatchRequest;
+import com.yupi.yurpc.model.RpcBatchResponse;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.serializer.Serializer;
@@ -8,6 +12,7 @@ import com.yupi.yurpc.serializer.SerializerFactory;
 import io.vertx.core.buffer.Buffer;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 
 //协议消息解码器
@@ -25,15 +30,29 @@ public class ProtocolMessageDecoder {
 
         //参数的获取和自定义协议消息空间是一样的，读取指定长度的数据来解决buffer和对象转换的问题
         header.setMagic(magic);
-        header.setVersion(buffer.getByte(1));
-        header.setSerializer(buffer.getByte(2));
+        //v1 的消息头格式不同，无法解码
+        byte version = buffer.getByte(1);
+        if (version <= ProtocolConstant.PROTOCOL_VERSION_1) {
+            throw new RuntimeException("不支持的协议版本: " + version);
+        }
+        header.setVersion(version);
+        //序列化器字节中同时包含压缩器信息
+        int serializerByte = buffer.getByte(2) & 0xFF;
+        header.setSerializer((byte) (serializerByte & ProtocolConstant.SERIALIZER_MASK));
+        header.setCompressor((byte) (serializerByte >> ProtocolConstant.COMPRESSOR_SHIFT & ProtocolConstant.COMPRESSOR_MASK));
+        header.setAcceptCompressor((byte) (serializerByte >> ProtocolConstant.ACCEPT_COMPRESSOR_SHIFT & ProtocolConstant.COMPRESSOR_MASK));
         header.setType(buffer.getByte(3));
         header.setStatus(buffer.getByte(4));
         header.setRequestId(buffer.getLong(5));
-        header.setBodyLength(buffer.getInt(13));
+        header.setTimeout(buffer.getInt(13));
+        header.setBodyLength(buffer.getInt(17));
 
-        //读取指定长度的数据来解决buffer和对象转换的问题
-        byte[] bodyBytes = buffer.getBytes(17, 17 + header.getBodyLength());
+        //直接从buffer中读取消息体，不拷贝成新的字节数组
+        int bodyStart = ProtocolConstant.MESSAGE_HEADER_LENGTH;
+        int bodyEnd = bodyStart + header.getBodyLength();
+        if (bodyEnd > buffer.length()) {
+            throw new RuntimeException("消息体长度不完整");
+        }
         //获取序列化协议
         ProtocolMessageSerializerEnum serializerEnum = ProtocolMessageSerializerEnum.getEnumByKey(header.getSerializer());
         if (serializerEnum == null) {
@@ -50,16 +69,50 @@ public class ProtocolMessageDecoder {
         //对不同类型的消息做出不同的处理
         switch (messageTypeEnum) {
             case REQUEST:
-                RpcRequest request = serializer.deserialize(bodyBytes, RpcRequest.class);
+            case ONE_WAY_REQUEST:
+                RpcRequest request = deserializeBody(serializer, header, buffer, bodyStart, bodyEnd, RpcRequest.class);
                 return new ProtocolMessage<>(header, request);
             case RESPONSE:
-                RpcResponse response = serializer.deserialize(bodyBytes, RpcResponse.class);
+                RpcResponse response = deserializeBody(serializer, header, buffer, bodyStart, bodyEnd, RpcResponse.class);
                 return new ProtocolMessage<>(header, response);
+            case BATCH_REQUEST:
+                RpcBatchRequest batchRequest = deserializeBody(serializer, header, buffer, bodyStart, bodyEnd, RpcBatchRequest.class);
+                return new ProtocolMessage<>(header, batchRequest);
+            case BATCH_RESPONSE:
+                RpcBatchResponse batchResponse = deserializeBody(serializer, header, buffer, bodyStart, bodyEnd, RpcBatchResponse.class);
+                return new ProtocolMessage<>(header, batchResponse);
+            case STREAM_DATA:
+            case STREAM_END:
+                RpcResponse streamResponse = deserializeBody(serializer, header, buffer, bodyStart, bodyEnd, RpcResponse.class);
+                return new ProtocolMessage<>(header, streamResponse);
+            case STREAM_CREDIT:
+                Integer credit = deserializeBody(serializer, header, buffer, bodyStart, bodyEnd, Integer.class);
+                return new ProtocolMessage<>(header, credit);
             case HEART_BEAT:
+                //心跳消息没有消息体
+                return new ProtocolMessage<>(header, null);
             case OTHERS:
             default:
                 throw new RuntimeException("暂不支持该消息类型");
         }
     }
 
+    //反序列化消息体，压缩过的消息体边解压边反序列化
+    private static <T> T deserializeBody(Serializer serializer, ProtocolMessage.Header header, Buffer buffer, int bodyStart, int bodyEnd, Class<T> tClass) throws IOException {
+        InputStream bodyInputStream = new BufferInputStream(buffer, bodyStart, bodyEnd);
+        if (header.getCompressor() == 0) {
+            return serializer.deserialize(bodyInputStream, tClass);
+        }
+        ProtocolMessageCompressorEnum compressorEnum = ProtocolMessageCompressorEnum.getEnumByKey(header.getCompressor());
+        if (compressorEnum == null) {
+            throw new RuntimeException("消息体的压缩器不存在");
+        }
+        long start = System.nanoTime();
+        try (InputStream inputStream = CompressorFactory.getInstance(compressorEnum.getValue()).decompress(bodyInputStream)) {
+            return serializer.deserialize(inputStream, tClass);
+        } finally {
+            CompressionMetrics.recordDecompress(System.nanoTime() - start);
+        }
+    }
+
 }
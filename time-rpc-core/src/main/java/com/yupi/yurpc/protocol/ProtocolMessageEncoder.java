@@ -1,15 +1,29 @@
 package com.yupi.yurpc.protocol;
 
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.compressor.Compressor;
+import com.yupi.yurpc.compressor.CompressorFactory;
+import com.yupi.yurpc.metrics.CompressionMetrics;
 import com.yupi.yurpc.serializer.Serializer;
 import com.yupi.yurpc.serializer.SerializerFactory;
 import io.vertx.core.buffer.Buffer;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 
 //协议消息编码器
 public class ProtocolMessageEncoder {
 
+    //预分配 buffer 的最小大小
+    private static final int MIN_SIZE_HINT = 256;
+
+    //预分配 buffer 的最大大小，超出部分由 buffer 自动扩容（偶尔出现的大消息不会让之后的小消息都按大消息分配）
+    private static final int MAX_SIZE_HINT = 64 * 1024;
+
+    //每种消息类型的预分配大小（按消息类型索引），取同类型上一条消息的大小，尽量避免写入过程中扩容拷贝
+    private static final AtomicIntegerArray SIZE_HINTS = new AtomicIntegerArray(16);
+
     //编码
     public static Buffer encode(ProtocolMessage<?> protocolMessage) throws IOException {
         //获取消息的header
@@ -18,14 +32,23 @@ public class ProtocolMessageEncoder {
         }
         ProtocolMessage.Header header = protocolMessage.getHeader();
 
-        // 依次向缓冲区写入字节
-        Buffer buffer = Buffer.buffer();
+        // 按估算大小预分配缓冲区，依次写入字节
+        Buffer buffer = Buffer.buffer(getSizeHint(header.getType()));
         buffer.appendByte(header.getMagic());
         buffer.appendByte(header.getVersion());
-        buffer.appendByte(header.getSerializer());
+        // 序列化器和可接受的压缩器共用一个字节，消息体压缩后再补充压缩器
+        buffer.appendByte((byte) (header.getSerializer()
+                | (header.getAcceptCompressor() & ProtocolConstant.COMPRESSOR_MASK) << ProtocolConstant.ACCEPT_COMPRESSOR_SHIFT));
         buffer.appendByte(header.getType());
         buffer.appendByte(header.getStatus());
         buffer.appendLong(header.getRequestId());
+        buffer.appendInt(header.getTimeout());
+        // body 长度先占位，写完 body 后回填
+        buffer.appendInt(0);
+        // 心跳等没有消息体的消息，body 长度为 0
+        if (protocolMessage.getBody() == null) {
+            return buffer;
+        }
 
         // 获取序列化器
         ProtocolMessageSerializerEnum serializerEnum = ProtocolMessageSerializerEnum.getEnumByKey(header.getSerializer());
@@ -33,10 +56,48 @@ public class ProtocolMessageEncoder {
             throw new RuntimeException("序列化协议不存在");
         }
         Serializer serializer = SerializerFactory.getInstance(serializerEnum.getValue());
-        byte[] bodyBytes = serializer.serialize(protocolMessage.getBody());
-        // 写入 body 长度和数据
-        buffer.appendInt(bodyBytes.length);
-        buffer.appendBytes(bodyBytes);
+        // body 直接序列化到缓冲区，再回填 body 长度
+        serializer.serialize(protocolMessage.getBody(), new BufferOutputStream(buffer));
+        buffer.setInt(17, buffer.length() - ProtocolConstant.MESSAGE_HEADER_LENGTH);
+        updateSizeHint(header.getType(), buffer.length());
+        // 消息体超过阈值时压缩
+        if (header.getCompressor() != 0
+                && buffer.length() - ProtocolConstant.MESSAGE_HEADER_LENGTH >= RpcApplication.getRpcConfig().getCompressThreshold()) {
+            return compress(buffer, header.getCompressor());
+        }
         return buffer;
     }
+
+    //压缩消息体，压缩后没有变小时按原始数据发送
+    private static Buffer compress(Buffer buffer, byte compressorKey) throws IOException {
+        ProtocolMessageCompressorEnum compressorEnum = ProtocolMessageCompressorEnum.getEnumByKey(compressorKey);
+        if (compressorEnum == null) {
+            throw new RuntimeException("压缩器不存在");
+        }
+        Compressor compressor = CompressorFactory.getInstance(compressorEnum.getValue());
+        byte[] bodyBytes = buffer.getBytes(ProtocolConstant.MESSAGE_HEADER_LENGTH, buffer.length());
+        long start = System.nanoTime();
+        byte[] compressedBytes = compressor.compress(bodyBytes);
+        CompressionMetrics.recordCompress(bodyBytes.length, compressedBytes.length, System.nanoTime() - start);
+        if (compressedBytes.length >= bodyBytes.length) {
+            return buffer;
+        }
+        Buffer compressedBuffer = Buffer.buffer(ProtocolConstant.MESSAGE_HEADER_LENGTH + compressedBytes.length);
+        compressedBuffer.appendBuffer(buffer, 0, ProtocolConstant.MESSAGE_HEADER_LENGTH);
+        compressedBuffer.appendBytes(compressedBytes);
+        compressedBuffer.setByte(2, (byte) (buffer.getByte(2)
+                | (compressorKey & ProtocolConstant.COMPRESSOR_MASK) << ProtocolConstant.COMPRESSOR_SHIFT));
+        compressedBuffer.setInt(17, compressedBytes.length);
+        return compressedBuffer;
+    }
+
+    //消息类型的预分配大小
+    private static int getSizeHint(byte type) {
+        return Math.max(SIZE_HINTS.get(type & 0x0F), MIN_SIZE_HINT);
+    }
+
+    //更新预分配大小：取本次消息的大小（变大变小都立即跟上），不超过上限
+    private static void updateSizeHint(byte type, int frameLength) {
+        SIZE_HINTS.lazySet(type & 0x0F, Math.min(frameLength, MAX_SIZE_HINT));
+    }
 }
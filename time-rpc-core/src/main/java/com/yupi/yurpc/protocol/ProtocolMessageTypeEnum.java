@@ -12,7 +12,17 @@ public enum ProtocolMessageTypeEnum {
     REQUEST(0),
     RESPONSE(1),
     HEART_BEAT(2),
-    OTHERS(3);
+    OTHERS(3),
+    //流式调用：数据（一个元素）、结束（正常结束或异常）、额度（接收方允许发送方继续发送的元素个数）
+    //流 id 即发起流式调用的请求 id
+    STREAM_DATA(4),
+    STREAM_END(5),
+    STREAM_CREDIT(6),
+    //单向请求：消息体与普通请求相同，服务端不发送响应
+    ONE_WAY_REQUEST(7),
+    //批量请求和批量响应：多个请求合并在一个消息帧中，响应按相同顺序返回
+    BATCH_REQUEST(8),
+    BATCH_RESPONSE(9);
 
     private final int key;
 
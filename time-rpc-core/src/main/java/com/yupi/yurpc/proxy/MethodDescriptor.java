@@ -0,0 +1,151 @@
+package com.yupi.yurpc.proxy;
+
+import com.yupi.yurpc.annotation.OneWay;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.config.RpcReferenceConfig;
+import com.yupi.yurpc.fault.retry.RetryStrategy;
+import com.yupi.yurpc.fault.retry.RetryStrategyFactory;
+import com.yupi.yurpc.fault.tolerant.TolerantStrategy;
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.fault.tolerant.TolerantStrategyFactory;
+import com.yupi.yurpc.invoker.MethodInvoker;
+import com.yupi.yurpc.loadbalancer.ConsistentHashLoadBalancer;
+import com.yupi.yurpc.loadbalancer.LoadBalancer;
+import com.yupi.yurpc.loadbalancer.LoadBalancerFactory;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import com.yupi.yurpc.registry.Registry;
+import com.yupi.yurpc.registry.RegistryFactory;
+import com.yupi.yurpc.serializer.Serializer;
+import com.yupi.yurpc.serializer.SerializerFactory;
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+
+//服务方法描述（消费端使用）
+//每个方法只在第一次调用时解析一次，之后的调用直接复用，不再重复计算服务键名、获取注册中心和各种策略
+@Getter
+public class MethodDescriptor {
+
+    //服务名称
+    private final String serviceName;
+
+    //服务版本
+    private final String serviceVersion;
+
+    //服务键名
+    private final String serviceKey;
+
+    //方法名称
+    private final String methodName;
+
+    //参数类型列表
+    private final Class<?>[] parameterTypes;
+
+    //是否异步方法（返回 CompletableFuture）
+    private final boolean async;
+
+    //是否服务端流式方法（返回 Iterator）
+    private final boolean streaming;
+
+    //是否双向流式方法（参数和返回值都是 StreamObserver）
+    private final boolean bidiStreaming;
+
+    //是否单向调用（不等待响应）
+    private final boolean oneWay;
+
+    //是否合并调用（同一时间窗口内的并发调用合并为一个批量请求）
+    private final boolean batch;
+
+    //请求超时时间（单位毫秒）
+    private final long timeout;
+
+    //注册中心
+    private final Registry registry;
+
+    //负载均衡器
+    private final LoadBalancer loadBalancer;
+
+    //重试策略
+    private final RetryStrategy retryStrategy;
+
+    //容错策略
+    private final TolerantStrategy tolerantStrategy;
+
+    //是否优先本地调用
+    private final boolean injvm;
+
+    //本地调用是否复制参数和返回值
+    private final boolean injvmCopy;
+
+    //序列化器（本地调用复制参数和返回值时使用）
+    private final Serializer serializer;
+
+    //负载均衡参数（调用方法名、一致性哈希的负载上限系数），只读，所有调用共享
+    private final Map<String, Object> loadBalancerParams;
+
+    //作为一致性哈希路由键的参数下标（-1 表示按方法名路由）
+    private final int hashKeyArgIndex;
+
+    public MethodDescriptor(Method method, RpcReferenceConfig referenceConfig, RpcConfig rpcConfig) {
+        this.serviceName = method.getDeclaringClass().getName();
+        this.serviceVersion = referenceConfig.getServiceVersion();
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName(serviceName);
+        serviceMetaInfo.setServiceVersion(serviceVersion);
+        this.serviceKey = serviceMetaInfo.getServiceKey();
+        this.methodName = method.getName();
+        this.parameterTypes = method.getParameterTypes();
+        this.async = method.getReturnType() == CompletableFuture.class;
+        this.streaming = method.getReturnType() == Iterator.class;
+        this.bidiStreaming = MethodInvoker.isBidiStreaming(method);
+        this.oneWay = method.isAnnotationPresent(OneWay.class) || referenceConfig.getOneWayMethods().contains(methodName);
+        if (oneWay && method.getReturnType() != void.class) {
+            throw new RpcException("单向调用的方法返回值必须是 void: " + method);
+        }
+        this.batch = referenceConfig.getBatchMethods().contains(methodName);
+        this.timeout = referenceConfig.getTimeout(methodName, rpcConfig.getTimeout());
+        this.registry = RegistryFactory.getInstance(rpcConfig.getRegistryConfig().getRegistry());
+        this.loadBalancer = LoadBalancerFactory.getInstance(
+                getOrDefault(referenceConfig.getLoadBalancer(), rpcConfig.getLoadBalancer()));
+        this.retryStrategy = RetryStrategyFactory.getInstance(
+                getOrDefault(referenceConfig.getRetryStrategy(), rpcConfig.getRetryStrategy()));
+        this.tolerantStrategy = TolerantStrategyFactory.getInstance(
+                getOrDefault(referenceConfig.getTolerantStrategy(), rpcConfig.getTolerantStrategy()));
+        this.injvm = rpcConfig.isInjvm();
+        this.injvmCopy = rpcConfig.isInjvmCopy();
+        this.serializer = SerializerFactory.getInstance(rpcConfig.getSerializer());
+        //将调用方法名（请求路径）作为负载均衡参数
+        Map<String, Object> params = new HashMap<>(4);
+        params.put(ConsistentHashLoadBalancer.METHOD_NAME, methodName);
+        if (rpcConfig.getConsistentHashLoadFactor() > 0) {
+            params.put(ConsistentHashLoadBalancer.LOAD_FACTOR, rpcConfig.getConsistentHashLoadFactor());
+        }
+        this.loadBalancerParams = Collections.unmodifiableMap(params);
+        Integer argIndex = referenceConfig.getHashKeyArgs().get(methodName);
+        if (argIndex != null && (argIndex < 0 || argIndex >= parameterTypes.length)) {
+            throw new RpcException(String.format("路由键参数下标越界: %s, index = %s", method, argIndex));
+        }
+        this.hashKeyArgIndex = argIndex == null ? -1 : argIndex;
+    }
+
+    //获取本次调用的负载均衡参数，配置了路由键参数时加入路由键
+    public Map<String, Object> getLoadBalancerParams(Object[] args) {
+        if (hashKeyArgIndex < 0) {
+            return loadBalancerParams;
+        }
+        Map<String, Object> params = new HashMap<>(loadBalancerParams);
+        params.put(ConsistentHashLoadBalancer.HASH_KEY, String.valueOf(args[hashKeyArgIndex]));
+        return params;
+    }
+
+    //服务引用配置优先，未配置时使用全局配置
+    private static String getOrDefault(String referenceValue, String globalValue) {
+        return referenceValue == null || referenceValue.isEmpty() ? globalValue : referenceValue;
+    }
+}
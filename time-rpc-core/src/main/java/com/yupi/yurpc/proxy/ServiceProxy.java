@@ -4,70 +4,115 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.http.HttpRequest;
 import cn.hutool.http.HttpResponse;
 import com.yupi.yurpc.RpcApplication;
-import com.yupi.yurpc.config.RpcConfig;
-import com.yupi.yurpc.constant.RpcConstant;
-import com.yupi.yurpc.fault.retry.RetryStrategy;
-import com.yupi.yurpc.fault.retry.RetryStrategyFactory;
-import com.yupi.yurpc.fault.tolerant.TolerantStrategy;
-import com.yupi.yurpc.fault.tolerant.TolerantStrategyFactory;
-import com.yupi.yurpc.loadbalancer.LoadBalancer;
-import com.yupi.yurpc.loadbalancer.LoadBalancerFactory;
+import com.yupi.yurpc.config.RpcReferenceConfig;
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.invoker.MethodInvoker;
+import com.yupi.yurpc.invoker.ServiceInvoker;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.model.ServiceMetaInfo;
-import com.yupi.yurpc.registry.Registry;
-import com.yupi.yurpc.registry.RegistryFactory;
+import com.yupi.yurpc.registry.LocalRegistry;
 import com.yupi.yurpc.serializer.Serializer;
 import com.yupi.yurpc.serializer.SerializerFactory;
 import com.yupi.yurpc.server.tcp.VertxTcpClient;
+import com.yupi.yurpc.stream.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 //服务代理（JDK 动态代理）
+@Slf4j
 public class ServiceProxy implements InvocationHandler {
 
+    //服务引用配置
+    private final RpcReferenceConfig referenceConfig;
+
+    //方法描述缓存，每个方法只解析一次
+    private final Map<Method, MethodDescriptor> methodDescriptorMap = new ConcurrentHashMap<>();
+
+    public ServiceProxy() {
+        this(new RpcReferenceConfig());
+    }
+
+    public ServiceProxy(RpcReferenceConfig referenceConfig) {
+        this.referenceConfig = referenceConfig;
+    }
+
     //调用代理
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        //获取服务的名称
-        String serviceName = method.getDeclaringClass().getName();
+        //Object 的方法（toString、hashCode、equals）在本地处理，不发起远程调用
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        //获取方法描述（服务键名、注册中心、负载均衡器、重试和容错策略都已预先解析）
+        MethodDescriptor methodDescriptor = getMethodDescriptor(method);
+
+        //服务提供者就在当前 JVM 中时直接调用
+        if (methodDescriptor.isInjvm()) {
+            MethodInvoker methodInvoker = getLocalMethodInvoker(methodDescriptor);
+            if (methodInvoker != null) {
+                //单向调用同样不等待执行结果，交给线程池执行后立即返回
+                if (methodDescriptor.isOneWay()) {
+                    doInvokeInJvmOneWay(methodInvoker, args, methodDescriptor);
+                    return null;
+                }
+                return doInvokeInJvm(methodInvoker, args, methodDescriptor);
+            }
+        }
 
         //构造请求
         RpcRequest rpcRequest = RpcRequest.builder()
-                .serviceName(serviceName)//服务名称
-                .methodName(method.getName())//方法名称
-                .parameterTypes(method.getParameterTypes())//参数类型
+                .serviceName(methodDescriptor.getServiceName())//服务名称
+                .methodName(methodDescriptor.getMethodName())//方法名称
+                .serviceVersion(methodDescriptor.getServiceVersion())//服务版本
+                .parameterTypes(methodDescriptor.getParameterTypes())//参数类型
                 .args(args)
                 .build();
 
-        //获取RPC框架配置
-        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
-        //获取注册中心
-        Registry registry = RegistryFactory.getInstance(rpcConfig.getRegistryConfig().getRegistry());
-
-        //注册信息赋值
-        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
-        serviceMetaInfo.setServiceName(serviceName);
-        serviceMetaInfo.setServiceVersion(RpcConstant.DEFAULT_SERVICE_VERSION);
-
         // 服务发现（根据服务名称、服务版本）
-        List<ServiceMetaInfo> serviceMetaInfoList = registry.serviceDiscovery(serviceMetaInfo.getServiceKey());
+        List<ServiceMetaInfo> serviceMetaInfoList = methodDescriptor.getRegistry().serviceDiscovery(methodDescriptor.getServiceKey());
         if (CollUtil.isEmpty(serviceMetaInfoList)) {
             throw new RuntimeException("暂无服务地址");
         }
 
         //负载均衡
-        LoadBalancer loadBalancer = LoadBalancerFactory.getInstance(rpcConfig.getLoadBalancer());
-        //将调用方法名（请求路径）作为负载均衡参数
-        Map<String, Object> requestParams = new HashMap<>();
-        requestParams.put("methodName", rpcRequest.getMethodName());
-        ServiceMetaInfo selectedServiceMetaInfo = loadBalancer.select(requestParams, serviceMetaInfoList);
+        ServiceMetaInfo selectedServiceMetaInfo = methodDescriptor.getLoadBalancer()
+                .select(methodDescriptor.getLoadBalancerParams(args), serviceMetaInfoList);
+
+        //单向调用：请求写入连接后立即返回，服务端不发送响应（不重试，不走容错）
+        if (methodDescriptor.isOneWay()) {
+            VertxTcpClient.doOneWayRequest(rpcRequest, selectedServiceMetaInfo, methodDescriptor.getTimeout());
+            return null;
+        }
+
+        //返回值为 CompletableFuture 的方法走异步调用，不阻塞调用线程
+        if (methodDescriptor.isAsync()) {
+            return doInvokeAsync(rpcRequest, selectedServiceMetaInfo, methodDescriptor);
+        }
+
+        //返回值为 Iterator 的方法走服务端流式调用，元素在迭代时逐个到达（已经收到部分数据后无法重试，不走重试和容错）
+        if (methodDescriptor.isStreaming()) {
+            return VertxTcpClient.doStreamRequest(rpcRequest, selectedServiceMetaInfo, methodDescriptor.getTimeout());
+        }
+
+        //参数和返回值都是 StreamObserver 的方法走双向流式调用，参数是接收响应的观察者，返回发送请求的观察者
+        if (methodDescriptor.isBidiStreaming()) {
+            rpcRequest.setArgs(null);
+            return VertxTcpClient.doBidiStreamRequest(rpcRequest, selectedServiceMetaInfo, methodDescriptor.getTimeout(),
+                    (StreamObserver<Object>) args[0]);
+        }
 
 //            // http 请求
 //            // 指定序列化器
@@ -79,19 +124,178 @@ public class ServiceProxy implements InvocationHandler {
         // 使用重试机制
         RpcResponse rpcResponse;
         try {
-            //获取重试机制
-            RetryStrategy retryStrategy = RetryStrategyFactory.getInstance(rpcConfig.getRetryStrategy());
-            rpcResponse = retryStrategy.doRetry(() ->
-                    VertxTcpClient.doRequest(rpcRequest, selectedServiceMetaInfo)
+            rpcResponse = methodDescriptor.getRetryStrategy().doRetry(() ->
+                    doRequest(rpcRequest, selectedServiceMetaInfo, methodDescriptor).get()
             );
         } catch (Exception e) {
             // 容错机制
-            TolerantStrategy tolerantStrategy = TolerantStrategyFactory.getInstance(rpcConfig.getTolerantStrategy());
-            rpcResponse = tolerantStrategy.doTolerant(null, e);
+            rpcResponse = methodDescriptor.getTolerantStrategy().doTolerant(null, e);
         }
         return rpcResponse.getData();
     }
 
+    //发送请求，请求完成时把耗时反馈给负载均衡器
+    private CompletableFuture<RpcResponse> doRequest(RpcRequest rpcRequest, ServiceMetaInfo selectedServiceMetaInfo, MethodDescriptor methodDescriptor) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<RpcResponse> responseFuture = VertxTcpClient.doRequestAsync(rpcRequest, selectedServiceMetaInfo,
+                methodDescriptor.getTimeout(), methodDescriptor.isBatch());
+        responseFuture.whenComplete((rpcResponse, e) -> methodDescriptor.getLoadBalancer()
+                .onResponse(selectedServiceMetaInfo, System.nanoTime() - startNanos, e == null));
+        return responseFuture;
+    }
+
+    //获取方法描述，首次调用时解析
+    private MethodDescriptor getMethodDescriptor(Method method) {
+        MethodDescriptor methodDescriptor = methodDescriptorMap.get(method);
+        if (methodDescriptor == null) {
+            methodDescriptor = methodDescriptorMap.computeIfAbsent(method,
+                    key -> new MethodDescriptor(key, referenceConfig, RpcApplication.getRpcConfig()));
+        }
+        return methodDescriptor;
+    }
+
+    //获取本地服务提供者的方法调用器（每次调用都查找，服务可能在代理创建之后才注册或被移除）
+    private MethodInvoker getLocalMethodInvoker(MethodDescriptor methodDescriptor) {
+        ServiceInvoker serviceInvoker = LocalRegistry.getInvoker(methodDescriptor.getServiceName(), methodDescriptor.getServiceVersion());
+        if (serviceInvoker == null) {
+            return null;
+        }
+        return serviceInvoker.getMethodInvoker(methodDescriptor.getMethodName(), methodDescriptor.getParameterTypes());
+    }
+
+    //本地调用，不经过注册中心、序列化和网络，服务方法抛出的异常直接抛给调用方
+    private Object doInvokeInJvm(MethodInvoker methodInvoker, Object[] args, MethodDescriptor methodDescriptor) throws Throwable {
+        //双向流的观察者不能复制，直接传递
+        if (!methodDescriptor.isInjvmCopy() || methodDescriptor.isBidiStreaming()) {
+            return methodInvoker.invoke(args);
+        }
+        //复制模式：参数和返回值都通过序列化器复制一份
+        Serializer serializer = methodDescriptor.getSerializer();
+        Object result = methodInvoker.invoke(copyArgs(serializer, args));
+        //流式方法的 Iterator 本身不能序列化，逐个复制元素
+        if (methodDescriptor.isStreaming() && result instanceof Iterator) {
+            return new CopyingIterator((Iterator<?>) result, serializer);
+        }
+        if (result instanceof CompletableFuture) {
+            return ((CompletableFuture<?>) result).thenApply(data -> {
+                try {
+                    return copy(serializer, data);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
+        }
+        return copy(serializer, result);
+    }
+
+    //本地单向调用，在线程池中执行，调用方不等待也收不到结果，异常只记录日志
+    //复制模式下参数在调用线程上复制，调用返回后调用方修改参数不会影响服务方法
+    private void doInvokeInJvmOneWay(MethodInvoker methodInvoker, Object[] args, MethodDescriptor methodDescriptor) throws IOException {
+        Object[] invokeArgs = methodDescriptor.isInjvmCopy() ? copyArgs(methodDescriptor.getSerializer(), args) : args;
+        RpcApplication.getRpcRuntime().getStreamExecutor().execute(() -> {
+            try {
+                methodInvoker.invoke(invokeArgs);
+            } catch (Throwable e) {
+                log.error("本地单向方法调用失败, service = {}, method = {}", methodDescriptor.getServiceName(), methodDescriptor.getMethodName(), e);
+            }
+        });
+    }
+
+    //通过序列化器复制参数列表
+    private static Object[] copyArgs(Serializer serializer, Object[] args) throws IOException {
+        if (args == null) {
+            return null;
+        }
+        Object[] copiedArgs = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            copiedArgs[i] = copy(serializer, args[i]);
+        }
+        return copiedArgs;
+    }
+
+    //通过序列化器复制对象（不可变对象直接返回）
+    private static Object copy(Serializer serializer, Object object) throws IOException {
+        if (object == null || isImmutable(object)) {
+            return object;
+        }
+        try {
+            return serializer.deserialize(serializer.serialize(object), object.getClass());
+        } catch (RuntimeException e) {
+            throw new RpcException("本地调用复制对象失败: " + object.getClass().getName(), e);
+        }
+    }
+
+    //本地调用复制模式下的流式方法结果：读取时逐个复制元素，关闭时关闭服务方法返回的迭代器
+    private static class CopyingIterator implements Iterator<Object>, AutoCloseable {
+
+        private final Iterator<?> iterator;
+
+        private final Serializer serializer;
+
+        CopyingIterator(Iterator<?> iterator, Serializer serializer) {
+            this.iterator = iterator;
+            this.serializer = serializer;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Object next() {
+            try {
+                return copy(serializer, iterator.next());
+            } catch (IOException e) {
+                throw new RpcException("本地调用复制流元素失败", e);
+            }
+        }
+
+        @Override
+        public void close() throws Exception {
+            if (iterator instanceof AutoCloseable) {
+                ((AutoCloseable) iterator).close();
+            }
+        }
+    }
+
+    //常见的不可变类型，不需要复制
+    private static boolean isImmutable(Object object) {
+        return object instanceof String || object instanceof Integer || object instanceof Long
+                || object instanceof Boolean || object instanceof Double || object instanceof Float
+                || object instanceof Short || object instanceof Byte || object instanceof Character
+                || object instanceof BigDecimal || object instanceof BigInteger || object instanceof Enum;
+    }
+
+    //处理 Object 的方法
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "ServiceProxy@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    //异步调用，响应到达时在 Vert.x 的响应处理器中直接完成 future
+    //重试策略是阻塞式的，异步调用不做重试，失败时直接走容错机制
+    private CompletableFuture<Object> doInvokeAsync(RpcRequest rpcRequest, ServiceMetaInfo selectedServiceMetaInfo, MethodDescriptor methodDescriptor) {
+        return doRequest(rpcRequest, selectedServiceMetaInfo, methodDescriptor)
+                .handle((rpcResponse, e) -> {
+                    if (e != null) {
+                        // 容错机制
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        rpcResponse = methodDescriptor.getTolerantStrategy().doTolerant(null,
+                                cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+                    }
+                    return rpcResponse.getData();
+                });
+    }
+
 
     //发送 HTTP 请求
 //    private static RpcResponse doHttpRequest(ServiceMetaInfo selectedServiceMetaInfo, byte[] bodyBytes) throws IOException {
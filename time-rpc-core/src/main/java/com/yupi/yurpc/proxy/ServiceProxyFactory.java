@@ -1,25 +1,42 @@
 package com.yupi.yurpc.proxy;
 
 import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcReferenceConfig;
 
 import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 //服务代理工厂（工厂模式，用于创建代理对象）
 //工厂模式：封装对象的创建逻辑
 public class ServiceProxyFactory {
 
+    //代理对象缓存，(服务类, 服务引用配置) -> 代理对象
+    private static final Map<List<Object>, Object> proxyCache = new ConcurrentHashMap<>();
+
     //根据服务类获取代理对象
     public static <T> T getProxy(Class<T> serviceClass) {
+        return getProxy(serviceClass, new RpcReferenceConfig());
+    }
+
+    //根据服务类和服务引用配置获取代理对象
+    //相同服务类和配置的代理对象只创建一次，多次注入共享同一个代理（及其方法描述缓存）
+    public static <T> T getProxy(Class<T> serviceClass, RpcReferenceConfig referenceConfig) {
         //判断是否开启 Mock
         if (RpcApplication.getRpcConfig().isMock()) {
             return getMockProxy(serviceClass);
         }
 
-        return (T) Proxy.newProxyInstance(
+        //配置是可变对象，使用副本作为缓存键，避免调用方之后修改配置改变键的哈希值
+        RpcReferenceConfig configSnapshot = referenceConfig.copy();
+        List<Object> cacheKey = Arrays.asList(serviceClass, configSnapshot);
+        return (T) proxyCache.computeIfAbsent(cacheKey, key -> Proxy.newProxyInstance(
                 serviceClass.getClassLoader(),
                 new Class[]{serviceClass},
-                new ServiceProxy());
+                new ServiceProxy(configSnapshot)));
     }
 
     //根据服务类获取 Mock 代理对象
@@ -6,6 +6,7 @@ import cn.hutool.cron.CronUtil;
 import cn.hutool.cron.task.Task;
 import cn.hutool.json.JSONUtil;
 import com.yupi.yurpc.config.RegistryConfig;
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 import io.etcd.jetcd.*;
 import io.etcd.jetcd.options.GetOption;
@@ -169,6 +170,8 @@ public class EtcdRegistry implements Registry {
     public void watch(String serviceNodeKey) {
         // 创建 Watch 客户端
         Watch watchClient = client.getWatchClient();
+        // 记录节点地址上的服务节点（节点下线后重新上线时也需要记录）
+        NodeMetricsRegistry.addServiceNode(serviceNodeKey);
         // 之前未被监听，开启监听
         boolean newWatch = watchingKeySet.add(serviceNodeKey);
         if (newWatch) {
@@ -180,6 +183,8 @@ public class EtcdRegistry implements Registry {
                         case DELETE:
                             // 清理注册服务缓存
                             registryServiceMultiCache.clearCache(serviceNodeKey);
+                            // 该地址上的服务都下线后，清理节点指标和连接
+                            NodeMetricsRegistry.removeServiceNode(serviceNodeKey);
                             break;
                         case PUT:
                         default:
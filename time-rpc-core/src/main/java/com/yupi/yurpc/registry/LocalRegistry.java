@@ -1,27 +1,68 @@
 package com.yupi.yurpc.registry;
 
+import com.yupi.yurpc.constant.RpcConstant;
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.invoker.ServiceInvoker;
+
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
 
 //本地注册中心
+//保存服务实例及其预先解析好的方法调用表，处理请求时不再创建对象、不再做反射查找
 public class LocalRegistry {
 
     //注册信息存储
-    private static final Map<String, Class<?>> map = new ConcurrentHashMap<>();
+    private static final Map<String, ServiceInvoker> map = new ConcurrentHashMap<>();
+
+    //服务版本，服务名称 -> 版本（本地调用时与消费端引用的版本比对）
+    private static final Map<String, String> versionMap = new ConcurrentHashMap<>();
 
-    //注册服务
+    //注册服务（根据实现类创建一个单例）
     public static void register(String serviceName, Class<?> implClass) {
-        map.put(serviceName, implClass);
+        Object serviceInstance;
+        try {
+            serviceInstance = implClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RpcException(String.format("%s 服务实例化失败", implClass.getName()), e);
+        }
+        register(serviceName, serviceInstance);
+    }
+
+    //注册服务（使用已有的服务实例，例如 Spring 管理的 Bean），使用默认版本
+    public static void register(String serviceName, Object serviceInstance) {
+        register(serviceName, RpcConstant.DEFAULT_SERVICE_VERSION, serviceInstance);
+    }
+
+    //注册指定版本的服务
+    public static void register(String serviceName, String serviceVersion, Object serviceInstance) {
+        versionMap.put(serviceName, serviceVersion);
+        map.put(serviceName, new ServiceInvoker(serviceInstance));
     }
 
-    //获取服务
+    //获取服务实现类
     public static Class<?> get(String serviceName) {
+        ServiceInvoker serviceInvoker = map.get(serviceName);
+        return serviceInvoker == null ? null : serviceInvoker.getImplClass();
+    }
+
+    //获取服务调用器
+    public static ServiceInvoker getInvoker(String serviceName) {
+        return map.get(serviceName);
+    }
+
+    //获取指定版本的服务调用器，版本不一致时返回 null（本地调用使用，不能调用到其他版本的实现）
+    public static ServiceInvoker getInvoker(String serviceName, String serviceVersion) {
+        if (!Objects.equals(versionMap.get(serviceName), serviceVersion)) {
+            return null;
+        }
         return map.get(serviceName);
     }
 
     //删除服务
     public static void remove(String serviceName) {
         map.remove(serviceName);
+        versionMap.remove(serviceName);
     }
 }
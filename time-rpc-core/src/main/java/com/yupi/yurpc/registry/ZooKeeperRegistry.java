@@ -2,6 +2,7 @@ package com.yupi.yurpc.registry;
 
 import cn.hutool.core.collection.ConcurrentHashSet;
 import com.yupi.yurpc.config.RegistryConfig;
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
@@ -122,6 +123,8 @@ public class ZooKeeperRegistry implements Registry {
     @Override
     public void watch(String serviceNodeKey) {
         String watchKey = ZK_ROOT_PATH + "/" + serviceNodeKey;
+        // 记录节点地址上的服务节点（节点下线后重新上线时也需要记录）
+        NodeMetricsRegistry.addServiceNode(serviceNodeKey);
         boolean newWatch = watchingKeySet.add(watchKey);
         if (newWatch) {
             CuratorCache curatorCache = CuratorCache.build(client, watchKey);
@@ -129,7 +132,11 @@ public class ZooKeeperRegistry implements Registry {
             curatorCache.listenable().addListener(
                     CuratorCacheListener
                             .builder()
-                            .forDeletes(childData -> registryServiceCache.clearCache())
+                            .forDeletes(childData -> {
+                                registryServiceCache.clearCache();
+                                // 该地址上的服务都下线后，清理节点指标和连接
+                                NodeMetricsRegistry.removeServiceNode(serviceNodeKey);
+                            })
                             .forChanges(((oldNode, node) -> registryServiceCache.clearCache()))
                             .build()
             );
@@ -6,6 +6,8 @@ import com.caucho.hessian.io.HessianOutput;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 
 //Hessian 序列化器
@@ -13,15 +15,25 @@ public class HessianSerializer implements Serializer {
     @Override
     public <T> byte[] serialize(T object) throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        HessianOutput ho = new HessianOutput(bos);
-        ho.writeObject(object);
+        serialize(object, bos);
         return bos.toByteArray();
     }
 
+    @Override
+    public <T> void serialize(T object, OutputStream outputStream) throws IOException {
+        HessianOutput ho = new HessianOutput(outputStream);
+        ho.writeObject(object);
+        ho.flush();
+    }
+
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> tClass) throws IOException {
-        ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-        HessianInput hi = new HessianInput(bis);
+        return deserialize(new ByteArrayInputStream(bytes), tClass);
+    }
+
+    @Override
+    public <T> T deserialize(InputStream inputStream, Class<T> tClass) throws IOException {
+        HessianInput hi = new HessianInput(inputStream);
         return (T) hi.readObject(tClass);
     }
 }
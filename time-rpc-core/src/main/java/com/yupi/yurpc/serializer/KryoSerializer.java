@@ -5,7 +5,8 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Kryo 序列化器
@@ -25,19 +26,54 @@ public class KryoSerializer implements Serializer {
         return kryo;
     });
 
+    /**
+     * 输出缓冲区大小
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 4096;
+
+    /**
+     * 缓冲区超过该大小后不再复用，避免线程长期持有大数组
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 每个线程复用一个 Output，避免每次序列化都分配缓冲区
+     */
+    private static final ThreadLocal<Output> OUTPUT_THREAD_LOCAL = ThreadLocal.withInitial(() -> new Output(OUTPUT_BUFFER_SIZE, -1));
+
     @Override
     public <T> byte[] serialize(T obj) {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        Output output = new Output(byteArrayOutputStream);
+        Output output = OUTPUT_THREAD_LOCAL.get();
+        output.reset();
         KRYO_THREAD_LOCAL.get().writeObject(output, obj);
-        output.close();
-        return byteArrayOutputStream.toByteArray();
+        byte[] bytes = output.toBytes();
+        if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+            output.setBuffer(new byte[OUTPUT_BUFFER_SIZE], -1);
+        }
+        return bytes;
+    }
+
+    @Override
+    public <T> void serialize(T obj, OutputStream outputStream) {
+        // 缓冲区写满时直接刷到输出流，不会扩容
+        Output output = OUTPUT_THREAD_LOCAL.get();
+        output.setOutputStream(outputStream);
+        try {
+            KRYO_THREAD_LOCAL.get().writeObject(output, obj);
+            output.flush();
+        } finally {
+            output.setOutputStream(null);
+        }
     }
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> classType) {
-        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-        Input input = new Input(byteArrayInputStream);
+        return deserialize(new ByteArrayInputStream(bytes), classType);
+    }
+
+    @Override
+    public <T> T deserialize(InputStream inputStream, Class<T> classType) {
+        Input input = new Input(inputStream);
         T result = KRYO_THREAD_LOCAL.get().readObject(input, classType);
         input.close();
         return result;
@@ -1,6 +1,10 @@
 package com.yupi.yurpc.serializer;
 
+import cn.hutool.core.io.IoUtil;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 
 //序列化器接口
@@ -9,6 +13,18 @@ public interface Serializer {
     //序列化
     <T> byte[] serialize(T object) throws IOException;
 
+    //序列化到输出流，编码时可以直接写入网络 buffer，不用再拷贝一次字节数组
+    //默认实现先序列化成字节数组，支持流式写入的序列化器应覆盖该方法
+    default <T> void serialize(T object, OutputStream outputStream) throws IOException {
+        outputStream.write(serialize(object));
+    }
+
     //反序列化
     <T> T deserialize(byte[] bytes, Class<T> tClass) throws IOException;
+
+    //从输入流反序列化，解码时可以直接读取网络 buffer，不用先拷贝出消息体字节数组
+    //默认实现先读成字节数组，支持流式读取的序列化器应覆盖该方法
+    default <T> T deserialize(InputStream inputStream, Class<T> tClass) throws IOException {
+        return deserialize(IoUtil.readBytes(inputStream, false), tClass);
+    }
 }
@@ -1,6 +1,9 @@
 package com.yupi.yurpc.server;
 
 import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.invoker.MethodInvoker;
+import com.yupi.yurpc.invoker.ServiceInvoker;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.registry.LocalRegistry;
@@ -12,7 +15,6 @@ import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
 
 
 //HTTP请求处理器
@@ -55,21 +57,26 @@ public class HttpServerHandler implements Handler<HttpServerRequest> {
             }
 
             try {
-                // 获取要调用的服务实现类，通过反射调用
-                Class<?> implClass = LocalRegistry.get(rpcRequest.getServiceName());
-                //通过反射获取方法
-                Method method = implClass.getMethod(rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
-                //调用implClass的实例化对象，调用方法
-                Object result = method.invoke(implClass.newInstance(), rpcRequest.getArgs());
+                //获取注册时预先解析好的方法调用器
+                ServiceInvoker serviceInvoker = LocalRegistry.getInvoker(rpcRequest.getServiceName());
+                if (serviceInvoker == null) {
+                    throw new RpcException("服务不存在: " + rpcRequest.getServiceName());
+                }
+                MethodInvoker methodInvoker = serviceInvoker.getMethodInvoker(rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
+                if (methodInvoker == null) {
+                    throw new RpcException(String.format("服务 %s 不存在方法 %s", rpcRequest.getServiceName(), rpcRequest.getMethodName()));
+                }
+                //调用服务实例的方法
+                Object result = methodInvoker.invoke(rpcRequest.getArgs());
                 //获取响应数据
                 rpcResponse.setData(result);
                 //获取方法的返回类型
-                rpcResponse.setDataType(method.getReturnType());
+                rpcResponse.setDataType(methodInvoker.getDataType());
                 rpcResponse.setMessage("ok");
-            } catch (Exception e) {
+            } catch (Throwable e) {
                 e.printStackTrace();
                 rpcResponse.setMessage(e.getMessage());
-                rpcResponse.setException(e);
+                rpcResponse.setException(e instanceof Exception ? (Exception) e : new RuntimeException(e));
             }
             // 响应
             doResponse(request, rpcResponse, finalSerializer);
@@ -1,5 +1,6 @@
 package com.yupi.yurpc.server;
 
+import com.yupi.yurpc.RpcApplication;
 import io.vertx.core.Vertx;
 
 
@@ -8,8 +9,8 @@ public class VertxHttpServer implements HttpServer {
 
     //启动服务器
     public void doStart(int port) {
-        // 创建 Vert.x 实例
-        Vertx vertx = Vertx.vertx();
+        // 使用运行时共享的 Vert.x 实例
+        Vertx vertx = RpcApplication.getRpcRuntime().getVertx();
 
         // 创建 HTTP 服务器
         io.vertx.core.http.HttpServer server = vertx.createHttpServer();
@@ -0,0 +1,11 @@
+package com.yupi.yurpc.server.dispatcher;
+
+
+//直接执行 - 请求分发器（在当前的 Vert.x 事件循环线程上执行，没有线程切换开销）
+public class DirectDispatcher implements Dispatcher {
+
+    @Override
+    public void dispatch(String serviceName, Runnable task) {
+        task.run();
+    }
+}
@@ -0,0 +1,16 @@
+package com.yupi.yurpc.server.dispatcher;
+
+import java.util.concurrent.RejectedExecutionException;
+
+
+//请求分发器（服务端使用），决定服务调用在哪个线程上执行
+public interface Dispatcher {
+
+    //分发任务，serviceName -> 被调用的服务名称，task -> 服务调用及响应任务
+    //线程池已满时抛出 RejectedExecutionException
+    void dispatch(String serviceName, Runnable task) throws RejectedExecutionException;
+
+    //关闭分发器，释放线程资源
+    default void shutdown() {
+    }
+}
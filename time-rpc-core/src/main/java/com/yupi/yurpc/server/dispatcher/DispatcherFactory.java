@@ -0,0 +1,21 @@
+package com.yupi.yurpc.server.dispatcher;
+
+import com.yupi.yurpc.spi.SpiLoader;
+
+
+//请求分发器工厂（工厂模式，用于获取请求分发器对象）
+public class DispatcherFactory {
+
+    static {
+        SpiLoader.load(Dispatcher.class);
+    }
+
+    //默认请求分发器
+    private static final Dispatcher DEFAULT_DISPATCHER = new WorkerPoolDispatcher();
+
+    //获取实例
+    public static Dispatcher getInstance(String key) {
+        return SpiLoader.getInstance(Dispatcher.class, key);
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.yupi.yurpc.server.dispatcher;
+
+
+//请求分发器键名常量
+public interface DispatcherKeys {
+
+    //直接在 Vert.x 事件循环线程上执行（只适合非常轻量、不阻塞的方法）
+    String DIRECT = "direct";
+
+    //共享的有界业务线程池
+    String POOL = "pool";
+
+    //每个服务独立的有界业务线程池（舱壁隔离）
+    String ISOLATED = "isolated";
+
+    //每个请求一个虚拟线程（需要 JDK 21 及以上）
+    String VIRTUAL = "virtual";
+
+}
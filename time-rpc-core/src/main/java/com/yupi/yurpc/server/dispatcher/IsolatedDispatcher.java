@@ -0,0 +1,34 @@
+package com.yupi.yurpc.server.dispatcher;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+
+//服务隔离线程池 - 请求分发器（舱壁模式）
+//每个服务使用独立的有界线程池，某个服务变慢只会占满自己的线程池，不会拖垮其他服务
+public class IsolatedDispatcher implements Dispatcher {
+
+    //服务名称 -> 该服务独立的线程池
+    private final Map<String, ExecutorService> executorServiceMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void dispatch(String serviceName, Runnable task) {
+        executorServiceMap.computeIfAbsent(serviceName, this::createExecutorService).execute(task);
+    }
+
+    private ExecutorService createExecutorService(String serviceName) {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        String simpleName = serviceName.substring(serviceName.lastIndexOf('.') + 1);
+        return WorkerPoolDispatcher.createExecutorService("rpc-" + simpleName + "-",
+                rpcConfig.getDispatcherThreads(), rpcConfig.getDispatcherQueueSize());
+    }
+
+    @Override
+    public void shutdown() {
+        executorServiceMap.values().forEach(ExecutorService::shutdown);
+    }
+}
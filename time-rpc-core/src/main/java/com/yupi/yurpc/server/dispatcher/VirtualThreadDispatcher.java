@@ -0,0 +1,37 @@
+package com.yupi.yurpc.server.dispatcher;
+
+import com.yupi.yurpc.utils.VirtualThreadUtils;
+
+import java.util.concurrent.ExecutorService;
+
+
+//虚拟线程 - 请求分发器（需要 JDK 21 及以上）
+//每个请求在一个新的虚拟线程上执行，适合 JDBC、HTTP 等阻塞型业务，大量并发阻塞调用也只占用很少的内存，不需要调整线程池大小
+public class VirtualThreadDispatcher implements Dispatcher {
+
+    //虚拟线程执行器（延迟创建，JDK 版本不满足时在第一次分发请求时报错）
+    private volatile ExecutorService executorService;
+
+    @Override
+    public void dispatch(String serviceName, Runnable task) {
+        getExecutorService().execute(task);
+    }
+
+    private ExecutorService getExecutorService() {
+        if (executorService == null) {
+            synchronized (this) {
+                if (executorService == null) {
+                    executorService = VirtualThreadUtils.newVirtualThreadPerTaskExecutor();
+                }
+            }
+        }
+        return executorService;
+    }
+
+    @Override
+    public void shutdown() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.yupi.yurpc.server.dispatcher;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+
+import java.util.concurrent.*;
+
+
+//共享业务线程池 - 请求分发器（服务调用在有界线程池中执行，不阻塞 Vert.x 事件循环）
+public class WorkerPoolDispatcher implements Dispatcher {
+
+    //业务线程池（延迟创建，避免只作为消费端时也创建线程）
+    private volatile ExecutorService executorService;
+
+    @Override
+    public void dispatch(String serviceName, Runnable task) {
+        getExecutorService().execute(task);
+    }
+
+    private ExecutorService getExecutorService() {
+        if (executorService == null) {
+            synchronized (this) {
+                if (executorService == null) {
+                    RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+                    executorService = createExecutorService("rpc-worker-",
+                            rpcConfig.getDispatcherThreads(), rpcConfig.getDispatcherQueueSize());
+                }
+            }
+        }
+        return executorService;
+    }
+
+    //创建有界线程池，队列满时拒绝（由调用方返回错误响应），而不是无限堆积
+    static ExecutorService createExecutorService(String threadNamePrefix, int threads, int queueSize) {
+        return new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize),
+                new NamedThreadFactory(threadNamePrefix, true),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void shutdown() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+}
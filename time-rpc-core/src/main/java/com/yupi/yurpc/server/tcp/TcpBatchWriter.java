@@ -0,0 +1,95 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.RpcApplication;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+//TCP 批量写出（写合并）
+//任意线程产生的消息帧先放入队列，由 socket 所在的事件循环线程在下一次执行时统一取出，
+//合并成尽量少的 socket.write（达到字节数或帧数阈值时分批写出），减少小消息的系统调用次数
+@Slf4j
+public class TcpBatchWriter {
+
+    private final NetSocket socket;
+
+    //socket 所在的事件循环上下文
+    private final Context context;
+
+    //单次写出的最大字节数
+    private final int maxBatchBytes;
+
+    //单次写出的最大帧数
+    private final int maxBatchFrames;
+
+    //待写出的消息帧
+    private final Queue<Buffer> pendingFrames = new ConcurrentLinkedQueue<>();
+
+    //是否已经安排了刷新任务
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    //需要在 socket 所在的事件循环线程上创建（例如连接建立的回调中）
+    public TcpBatchWriter(NetSocket socket) {
+        this(socket, Vertx.currentContext(),
+                RpcApplication.getRpcConfig().getWriteBatchMaxBytes(),
+                RpcApplication.getRpcConfig().getWriteBatchMaxFrames());
+    }
+
+    public TcpBatchWriter(NetSocket socket, Context context, int maxBatchBytes, int maxBatchFrames) {
+        this.socket = socket;
+        this.context = context;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchFrames = maxBatchFrames;
+    }
+
+    //写出消息帧（线程安全）
+    public void write(Buffer frame) {
+        pendingFrames.offer(frame);
+        // 只有第一个放入的线程负责安排刷新任务，同一批次的其他帧搭便车一起写出
+        if (flushScheduled.compareAndSet(false, true)) {
+            context.runOnContext(v -> flush());
+        }
+    }
+
+    //在事件循环线程上合并写出
+    private void flush() {
+        // 先重置标记再取队列，保证取完之后新放入的帧一定会触发下一次刷新
+        flushScheduled.set(false);
+        Buffer batch = null;
+        int frameCount = 0;
+        Buffer frame;
+        while ((frame = pendingFrames.poll()) != null) {
+            if (batch == null) {
+                batch = frame;
+            } else {
+                batch.appendBuffer(frame);
+            }
+            frameCount++;
+            if (batch.length() >= maxBatchBytes || frameCount >= maxBatchFrames) {
+                doWrite(batch);
+                batch = null;
+                frameCount = 0;
+            }
+        }
+        if (batch != null) {
+            doWrite(batch);
+        }
+    }
+
+    private void doWrite(Buffer batch) {
+        socket.write(batch, result -> {
+            if (result.failed()) {
+                // 写出失败后连接上的数据已经不完整，关闭连接，由关闭回调让连接上等待中的请求立即失败
+                log.error("消息写出失败，关闭连接: {}", socket.remoteAddress(), result.cause());
+                socket.close();
+            }
+        });
+    }
+}
@@ -0,0 +1,279 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.model.RpcResponse;
+import com.yupi.yurpc.protocol.ProtocolMessage;
+import com.yupi.yurpc.protocol.ProtocolMessageEncoder;
+import com.yupi.yurpc.protocol.ProtocolMessageStatusEnum;
+import com.yupi.yurpc.protocol.ProtocolMessageTypeEnum;
+import com.yupi.yurpc.stream.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+//双向流的一端（消费端和服务端共用）
+//两个方向各自独立做流量控制：
+//发送方向：持有对端给出的额度，额度用完时 onNext 阻塞等待，不会在本地无限堆积
+//接收方向：收到的元素按顺序交给本地观察者（在 executor 上串行执行，不阻塞事件循环），每处理完半个窗口就给对端补充额度
+//STREAM_DATA / STREAM_END / STREAM_CREDIT 消息在两个方向上通用，流 id 即发起调用的请求 id
+@Slf4j
+public class TcpBidiStream {
+
+    private final TcpBatchWriter batchWriter;
+
+    //流 id（即请求 id）
+    private final long requestId;
+
+    //消息头模板（序列化器、协议版本、可以接受的压缩器）
+    private final ProtocolMessage.Header headerTemplate;
+
+    //发送时使用的压缩器（对端可以接受的压缩器）
+    private final byte compressor;
+
+    //接收窗口
+    private final int window;
+
+    //发送时等待额度的超时时间（单位毫秒）
+    private final long timeoutMillis;
+
+    //执行本地观察者回调的线程池
+    private final Executor executor;
+
+    //流结束后的回调（从连接的流表中移除）
+    private final Runnable onClose;
+
+    //发送额度
+    private final Semaphore sendCredits = new Semaphore(0);
+
+    //等待交给本地观察者的回调，串行执行
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    //是否有线程正在执行回调
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    //本端的发送观察者
+    private final StreamObserver<Object> outbound = new OutboundObserver();
+
+    //本地接收观察者，设置之前收到的元素先排队（最多一个窗口）
+    private volatile StreamObserver<Object> inbound;
+
+    //本端发送已结束
+    private volatile boolean outboundClosed = false;
+
+    //对端发送已结束
+    private volatile boolean inboundClosed = false;
+
+    //上次补充额度之后处理的元素个数（只在回调线程上读写）
+    private int consumed = 0;
+
+    public TcpBidiStream(TcpBatchWriter batchWriter, ProtocolMessage.Header headerTemplate, byte compressor, int window,
+                         long timeoutMillis, Executor executor, Runnable onClose) {
+        this.batchWriter = batchWriter;
+        this.requestId = headerTemplate.getRequestId();
+        this.headerTemplate = headerTemplate;
+        this.compressor = compressor;
+        this.window = Math.max(1, window);
+        this.timeoutMillis = timeoutMillis;
+        this.executor = executor;
+        this.onClose = onClose;
+    }
+
+    //本端的发送观察者
+    public StreamObserver<Object> getOutbound() {
+        return outbound;
+    }
+
+    //设置本地接收观察者，开始处理收到的元素
+    public void start(StreamObserver<Object> inbound) {
+        this.inbound = inbound;
+        scheduleDrain();
+    }
+
+    //给对端初始额度（一个窗口）
+    public void grantInitialCredit() {
+        sendCredit(window);
+    }
+
+    //收到对端的元素
+    void onData(Object item) {
+        execute(() -> {
+            inbound.onNext(item);
+            // 处理了半个窗口后补充额度
+            if (++consumed >= Math.max(1, window / 2)) {
+                sendCredit(consumed);
+                consumed = 0;
+            }
+        });
+    }
+
+    //收到对端的结束消息（或流开始前的错误响应）
+    //先更新状态再通知观察者，观察者收到通知时流已经从流表中移除、不能再发送
+    void onEnd(RpcResponse rpcResponse) {
+        inboundClosed = true;
+        // 对端异常结束时，本端也不能再发送
+        if (rpcResponse.getException() != null) {
+            outboundClosed = true;
+            sendCredits.release(Integer.MAX_VALUE / 2);
+        }
+        closeIfDone();
+        execute(() -> {
+            if (rpcResponse.getException() != null) {
+                inbound.onError(rpcResponse.getException());
+            } else {
+                inbound.onCompleted();
+            }
+        });
+    }
+
+    //收到对端的额度
+    void onCredit(int credit) {
+        sendCredits.release(credit);
+    }
+
+    //本端无法继续（例如服务方法调用失败）：通知对端异常结束，不再接收对端的元素
+    public void abort(Throwable cause) {
+        outbound.onError(cause);
+        inboundClosed = true;
+        sendCredits.release(Integer.MAX_VALUE / 2);
+        onClose.run();
+    }
+
+    //连接断开
+    void onError(Throwable cause) {
+        outboundClosed = true;
+        inboundClosed = true;
+        sendCredits.release(Integer.MAX_VALUE / 2);
+        onClose.run();
+        execute(() -> inbound.onError(cause));
+    }
+
+    //回调串行执行
+    private void execute(Runnable task) {
+        tasks.offer(task);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (inbound == null || tasks.isEmpty() || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            log.error("流回调线程池已满, requestId = {}", requestId, e);
+            onError(new RpcException("流回调线程池已满"));
+        }
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.error("流观察者执行失败, requestId = {}", requestId, e);
+                }
+            }
+        } finally {
+            draining.set(false);
+            scheduleDrain();
+        }
+    }
+
+    //两个方向都结束后移除流
+    private void closeIfDone() {
+        if (outboundClosed && inboundClosed) {
+            onClose.run();
+        }
+    }
+
+    private void sendCredit(int credit) {
+        if (inboundClosed) {
+            return;
+        }
+        send(ProtocolMessageTypeEnum.STREAM_CREDIT, credit);
+    }
+
+    //发送流消息，每条消息使用独立的消息头（可能在多个线程上发送）
+    private void send(ProtocolMessageTypeEnum type, Object body) {
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(headerTemplate.getMagic());
+        header.setVersion(headerTemplate.getVersion());
+        header.setSerializer(headerTemplate.getSerializer());
+        header.setCompressor(compressor);
+        header.setAcceptCompressor(headerTemplate.getAcceptCompressor());
+        header.setType((byte) type.getKey());
+        header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
+        header.setRequestId(requestId);
+        try {
+            batchWriter.write(ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, body)));
+        } catch (IOException e) {
+            throw new RpcException("流消息编码错误", e);
+        }
+    }
+
+    //本端的发送观察者，发送前先获取额度
+    private class OutboundObserver implements StreamObserver<Object> {
+
+        @Override
+        public void onNext(Object value) {
+            if (outboundClosed) {
+                throw new RpcException("流已结束, requestId = " + requestId);
+            }
+            try {
+                if (!sendCredits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new RpcException(String.format("等待对端额度超时（%s ms）, requestId = %s", timeoutMillis, requestId));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RpcException("等待对端额度时被中断", e);
+            }
+            if (outboundClosed) {
+                throw new RpcException("流已结束, requestId = " + requestId);
+            }
+            RpcResponse rpcResponse = new RpcResponse();
+            rpcResponse.setData(value);
+            rpcResponse.setDataType(value == null ? Object.class : value.getClass());
+            rpcResponse.setMessage("ok");
+            send(ProtocolMessageTypeEnum.STREAM_DATA, rpcResponse);
+        }
+
+        //异常结束两个方向：对端收到后也不再发送，本端不再等待对端的结束消息
+        @Override
+        public void onError(Throwable t) {
+            inboundClosed = true;
+            RpcResponse rpcResponse = new RpcResponse();
+            rpcResponse.setDataType(Object.class);
+            rpcResponse.setMessage(t.getMessage());
+            rpcResponse.setException(t instanceof Exception ? (Exception) t : new RuntimeException(t));
+            finish(rpcResponse);
+        }
+
+        @Override
+        public void onCompleted() {
+            RpcResponse rpcResponse = new RpcResponse();
+            rpcResponse.setDataType(Object.class);
+            rpcResponse.setMessage("ok");
+            finish(rpcResponse);
+        }
+
+        private void finish(RpcResponse rpcResponse) {
+            if (outboundClosed) {
+                return;
+            }
+            outboundClosed = true;
+            send(ProtocolMessageTypeEnum.STREAM_END, rpcResponse);
+            closeIfDone();
+        }
+    }
+}
@@ -1,63 +1,72 @@
 package com.yupi.yurpc.server.tcp;
 
+import com.yupi.yurpc.exception.RpcException;
 import com.yupi.yurpc.protocol.ProtocolConstant;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.parsetools.RecordParser;
 
 
 //TCP消息处理器包装
-//装饰者模式，使用 recordParser 对原有的 buffer 处理能力进行增强
+//装饰者模式，对原有的 buffer 处理能力进行增强
 //主要是为了结局tcp半包、粘包问题
+//完整的消息直接从收到的 buffer 上切片（共享底层内存，不拷贝），只有跨越多个 TCP 包的半包数据才需要拷贝拼接
+//切片只在 bufferHandler 执行期间有效，bufferHandler 需要同步完成解码
 public class TcpBufferHandlerWrapper implements Handler<Buffer> {
 
-    //解析器，用于解决半包、粘包问题
-    private final RecordParser recordParser;
+    //消息处理器，每次处理一条完整的消息
+    private final Handler<Buffer> bufferHandler;
+
+    //尚未凑成完整消息的半包数据
+    private Buffer cumulation;
 
     // 构造方法，传入buffer处理器
     public TcpBufferHandlerWrapper(Handler<Buffer> bufferHandler) {
-        recordParser = initRecordParser(bufferHandler);
-    }
-
-    //初始化解析器
-    private RecordParser initRecordParser(Handler<Buffer> bufferHandler) {
-        //初始化解析器，设置为固定长度模式，先读取消息头
-        RecordParser parser = RecordParser.newFixed(ProtocolConstant.MESSAGE_HEADER_LENGTH);
-
-        //设置解析器的输出处理器
-        parser.setOutput(new Handler<Buffer>() {
-            // 用于记录消息体长度，-1表示尚未读取头部
-            int size = -1;
-            //创建一个空的缓冲区
-            Buffer resultBuffer = Buffer.buffer();
-
-            @Override
-            public void handle(Buffer buffer) {
-                //判断读取的位置
-                if (-1 == size) {
-                    //读取body长度,在第13字节的位置
-                    size = buffer.getInt(13);
-                    //调整解析器模式，准备读取指定长度的消息体
-                    parser.fixedSizeMode(size);
-                    //写入头信息到结果
-                    resultBuffer.appendBuffer(buffer);
-                } else {
-                    //写入体信息到结果
-                    resultBuffer.appendBuffer(buffer);
-                    // 已拼接为完整 Buffer，执行处理
-                    bufferHandler.handle(resultBuffer);
-                    //重置
-                    parser.fixedSizeMode(ProtocolConstant.MESSAGE_HEADER_LENGTH);
-                    size = -1;
-                    resultBuffer = Buffer.buffer();
-                }
-            }
-        });
-        return parser;
+        this.bufferHandler = bufferHandler;
     }
 
     @Override
     public void handle(Buffer buffer) {
-        recordParser.handle(buffer);
+        //有半包数据时先拼接
+        Buffer data;
+        if (cumulation == null) {
+            data = buffer;
+        } else {
+            cumulation.appendBuffer(buffer);
+            data = cumulation;
+        }
+
+        int offset = 0;
+        int length = data.length();
+        //循环读取完整的消息（粘包时一个 buffer 中包含多条消息）
+        while (length - offset >= 2) {
+            //v1 的消息头只有 17 字节，按当前格式读取消息体长度会错位，直接拒绝
+            byte version = data.getByte(offset + 1);
+            if (version <= ProtocolConstant.PROTOCOL_VERSION_1) {
+                throw new RpcException("不支持的协议版本: " + version + "，对端需要升级到 v" + ProtocolConstant.PROTOCOL_VERSION_2 + " 及以上");
+            }
+            if (length - offset < ProtocolConstant.MESSAGE_HEADER_LENGTH) {
+                break;
+            }
+            //读取body长度,在消息头第17字节的位置
+            int bodyLength = data.getInt(offset + 17);
+            if (bodyLength < 0) {
+                throw new RpcException("消息体长度非法: " + bodyLength);
+            }
+            int frameLength = ProtocolConstant.MESSAGE_HEADER_LENGTH + bodyLength;
+            if (length - offset < frameLength) {
+                break;
+            }
+            //完整的消息，切片后直接处理
+            bufferHandler.handle(data.slice(offset, offset + frameLength));
+            offset += frameLength;
+        }
+
+        //保存剩余的半包数据
+        if (offset == length) {
+            cumulation = null;
+        } else if (offset > 0 || data != cumulation) {
+            //拷贝剩余数据，避免后续拼接修改已经交出去的切片
+            cumulation = data.getBuffer(offset, length);
+        }
     }
 }
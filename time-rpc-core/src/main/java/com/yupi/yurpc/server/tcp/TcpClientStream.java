@@ -0,0 +1,139 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.model.RpcResponse;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+//客户端流（服务端流式调用的接收端），以阻塞 Iterator 的形式交给调用方
+//每消费半个窗口的元素就向服务端补充等量的额度，服务端最多领先一个窗口，本地缓存的元素个数不会超过窗口大小
+//非线程安全，同一个流只能由一个线程读取
+//提前停止读取时需要调用 close()（服务代理返回的 Iterator 可以转换为 AutoCloseable），服务端随之取消流并释放迭代器
+//等待超时、中断时自动关闭
+public class TcpClientStream implements Iterator<Object>, AutoCloseable {
+
+    //流结束标记
+    private static final Object END = new Object();
+
+    //null 元素的占位（阻塞队列不能存放 null）
+    private static final Object NULL = new Object();
+
+    private final TcpConnection connection;
+
+    //流 id（即请求 id）
+    private final long requestId;
+
+    //序列化器（发送额度消息时使用）
+    private final byte serializer;
+
+    //接收窗口
+    private final int window;
+
+    //等待下一个元素的超时时间（单位毫秒）
+    private final long timeoutMillis;
+
+    //已收到、尚未被消费的元素（由事件循环线程放入）
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+
+    //流异常结束的原因
+    private volatile Throwable error;
+
+    //已经取出、尚未返回给调用方的元素
+    private Object next;
+
+    //是否已经读到流结束
+    private boolean finished = false;
+
+    //上次补充额度之后消费的元素个数
+    private int consumed = 0;
+
+    public TcpClientStream(TcpConnection connection, long requestId, byte serializer, int window, long timeoutMillis) {
+        this.connection = connection;
+        this.requestId = requestId;
+        this.serializer = serializer;
+        this.window = window;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    //收到一个元素
+    void onData(Object item) {
+        queue.offer(item == null ? NULL : item);
+    }
+
+    //收到流结束（或非流式的响应，例如服务不存在）
+    void onEnd(RpcResponse rpcResponse) {
+        if (rpcResponse.getException() != null) {
+            error = rpcResponse.getException();
+        }
+        queue.offer(END);
+    }
+
+    //连接断开等异常
+    void onError(Throwable cause) {
+        error = cause;
+        queue.offer(END);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        Object item;
+        try {
+            item = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RpcException("等待流数据时被中断", e);
+        }
+        if (item == null) {
+            close();
+            throw new RpcException(String.format("等待流数据超时（%s ms）, requestId = %s", timeoutMillis, requestId));
+        }
+        if (item == END) {
+            finished = true;
+            if (error != null) {
+                throw new RpcException("流式调用失败: " + error.getMessage(), error);
+            }
+            return false;
+        }
+        next = item;
+        return true;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object item = next;
+        next = null;
+        // 消费了半个窗口后补充额度
+        if (++consumed >= Math.max(1, window / 2)) {
+            connection.sendStreamCredit(requestId, serializer, consumed);
+            consumed = 0;
+        }
+        return item == NULL ? null : item;
+    }
+
+    //停止读取：从连接的流表中移除，并通知服务端取消流（流已经结束时不做任何事）
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        next = null;
+        queue.clear();
+        connection.cancelStream(requestId, serializer);
+    }
+}
@@ -0,0 +1,659 @@
+package com.yupi.yurpc.server.tcp;
+
+import cn.hutool.core.util.IdUtil;
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.metrics.NodeMetrics;
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
+import com.yupi.yurpc.model.RpcBatchRequest;
+import com.yupi.yurpc.model.RpcBatchResponse;
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.RpcResponse;
+import com.yupi.yurpc.protocol.*;
+import com.yupi.yurpc.stream.StreamObserver;
+import io.netty.util.Timeout;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+//TCP 长连接
+//同一个 socket 上可以同时存在多个未完成的请求（多路复用），响应通过消息头中的 requestId 匹配回对应的请求
+//定时发送心跳，采集 RTT，并在连续多次心跳无响应时主动关闭连接（半死连接），由连接池在下次使用时重建
+//心跳相关的状态只在连接所属的事件循环线程上读写
+//建立连接后通过心跳握手协商协议版本，v3 时方法第一次调用携带完整签名并定义方法 id，之后只携带方法 id
+@Slf4j
+public class TcpConnection {
+
+    private final NetSocket socket;
+
+    //服务节点地址（host:port）
+    private final String address;
+
+    //服务节点指标，记录心跳 RTT
+    private final NodeMetrics nodeMetrics;
+
+    //批量写出，同一时刻多个线程发出的请求合并写出
+    private final TcpBatchWriter batchWriter;
+
+    //等待响应的请求，requestId -> 响应 future
+    private final Map<Long, CompletableFuture<RpcResponse>> pendingRequests = new ConcurrentHashMap<>();
+
+    //等待响应的批量请求，批量请求 id -> 批量请求（各个请求的 requestId 和清理定时任务）
+    private final Map<Long, PendingBatch> pendingBatches = new ConcurrentHashMap<>();
+
+    //请求合并
+    private final TcpRequestBatcher requestBatcher;
+
+    //进行中的流式调用，流 id（requestId） -> 客户端流
+    private final Map<Long, TcpClientStream> streams = new ConcurrentHashMap<>();
+
+    //进行中的双向流式调用，流 id（requestId） -> 双向流
+    private final Map<Long, TcpBidiStream> bidiStreams = new ConcurrentHashMap<>();
+
+    //连接是否已关闭
+    private volatile boolean closed = false;
+
+    //连接是否正在排空（不再分配新的请求，空闲后关闭）
+    private volatile boolean draining = false;
+
+    //连接所属的事件循环上下文
+    private final Context context;
+
+    //Vert.x 实例（用于心跳定时器）
+    private Vertx vertx;
+
+    //心跳定时器 id（-1 表示未开启）
+    private long heartbeatTimerId = -1;
+
+    //等待响应的心跳 requestId
+    private long heartbeatRequestId;
+
+    //等待响应的心跳发送时间（0 表示没有等待响应的心跳）
+    private long heartbeatSentNanos;
+
+    //连续未响应的心跳次数
+    private int missedHeartbeats;
+
+    //协商后的协议版本（握手完成前按 v2 发送）
+    private volatile byte protocolVersion = ProtocolConstant.PROTOCOL_VERSION_2;
+
+    //请求使用的压缩器（服务端在握手心跳响应中声明可以接受，握手完成前或服务端不支持时不压缩）
+    private volatile byte compressor = 0;
+
+    //已分配的方法 id
+    private final Map<MethodSignature, Integer> assignedMethodIds = new ConcurrentHashMap<>();
+
+    //已经发送过定义的方法 id（定义请求写出之后才加入，保证服务端先收到定义）
+    private final Map<MethodSignature, Integer> definedMethodIds = new ConcurrentHashMap<>();
+
+    //方法 id 生成器
+    private final AtomicInteger methodIdGenerator = new AtomicInteger(0);
+
+    //需要在连接所属的事件循环线程上创建
+    public TcpConnection(NetSocket socket, String address) {
+        this.socket = socket;
+        this.address = address;
+        this.nodeMetrics = NodeMetricsRegistry.getMetrics(address);
+        this.batchWriter = new TcpBatchWriter(socket);
+        this.context = Vertx.currentContext();
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        this.requestBatcher = new TcpRequestBatcher(this, context, rpcConfig.getBatchMaxSize(), rpcConfig.getBatchWindow());
+        // 接收响应
+        socket.handler(new TcpBufferHandlerWrapper(this::handleMessage));
+        // 连接断开时，让所有未完成的请求失败，避免调用方一直等待
+        socket.closeHandler(v -> {
+            cancelHeartbeat();
+            failPendingRequests(new RpcException("连接已关闭: " + address));
+        });
+        socket.exceptionHandler(e -> {
+            log.error("连接异常: {}", address, e);
+            socket.close();
+        });
+        startHeartbeat();
+    }
+
+    //发送请求，返回响应 future，超过 timeoutMillis 未收到响应时 future 以超时异常结束
+    public CompletableFuture<RpcResponse> send(ProtocolMessage<RpcRequest> protocolMessage, long timeoutMillis) {
+        CompletableFuture<RpcResponse> responseFuture = registerPendingRequest(protocolMessage, timeoutMillis);
+        if (responseFuture.isDone()) {
+            return responseFuture;
+        }
+        try {
+            writeRequest(protocolMessage);
+        } catch (IOException e) {
+            pendingRequests.remove(protocolMessage.getHeader().getRequestId());
+            responseFuture.completeExceptionally(new RpcException("协议消息编码错误", e));
+        }
+        return responseFuture;
+    }
+
+    //发送可以合并的请求：同一时间窗口内同一服务方法的请求合并为一个批量请求发送，响应与单独发送时相同
+    //协议版本协商完成前（或使用 JSON 序列化时）按普通请求发送
+    public CompletableFuture<RpcResponse> sendBatched(ProtocolMessage<RpcRequest> protocolMessage, long timeoutMillis) {
+        if (!isMethodIdEnabled(protocolMessage.getHeader())) {
+            return send(protocolMessage, timeoutMillis);
+        }
+        CompletableFuture<RpcResponse> responseFuture = registerPendingRequest(protocolMessage, timeoutMillis);
+        if (!responseFuture.isDone()) {
+            requestBatcher.add(protocolMessage);
+        }
+        return responseFuture;
+    }
+
+    //登记等待响应的请求，超过 timeoutMillis 未收到响应时 future 以超时异常结束，连接已关闭时直接返回失败的 future
+    private CompletableFuture<RpcResponse> registerPendingRequest(ProtocolMessage<RpcRequest> protocolMessage, long timeoutMillis) {
+        CompletableFuture<RpcResponse> responseFuture = new CompletableFuture<>();
+        if (closed) {
+            responseFuture.completeExceptionally(new RpcException("连接已关闭: " + address));
+            return responseFuture;
+        }
+        long requestId = protocolMessage.getHeader().getRequestId();
+        pendingRequests.put(requestId, responseFuture);
+        // 超时后移除等待中的请求并使其失败，收到响应后取消超时任务
+        Timeout timeout = RpcApplication.getRpcRuntime().getTimeoutTimer().newTimeout(t -> {
+            CompletableFuture<RpcResponse> future = pendingRequests.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(new RpcException(String.format("请求超时（%s ms）: %s", timeoutMillis, address)));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        responseFuture.whenComplete((rpcResponse, e) -> {
+            timeout.cancel();
+            closeIfIdle();
+        });
+        return responseFuture;
+    }
+
+    //发送单向请求，写出后立即返回，服务端不发送响应
+    //协议版本协商完成前（或旧版本服务端）按普通请求发送，响应到达后直接丢弃
+    public void sendOneWay(ProtocolMessage<RpcRequest> protocolMessage, long timeoutMillis) {
+        if (closed) {
+            throw new RpcException("连接已关闭: " + address);
+        }
+        if (protocolVersion < ProtocolConstant.PROTOCOL_VERSION) {
+            send(protocolMessage, timeoutMillis);
+            return;
+        }
+        protocolMessage.getHeader().setType((byte) ProtocolMessageTypeEnum.ONE_WAY_REQUEST.getKey());
+        try {
+            writeRequest(protocolMessage);
+        } catch (IOException e) {
+            throw new RpcException("协议消息编码错误", e);
+        }
+    }
+
+    //发起服务端流式调用，返回逐个读取元素的阻塞迭代器，timeoutMillis 为等待每个元素的超时时间
+    public TcpClientStream openStream(ProtocolMessage<RpcRequest> protocolMessage, long timeoutMillis) {
+        if (closed) {
+            throw new RpcException("连接已关闭: " + address);
+        }
+        ProtocolMessage.Header header = protocolMessage.getHeader();
+        long requestId = header.getRequestId();
+        int window = Math.max(1, RpcApplication.getRpcConfig().getStreamWindow());
+        TcpClientStream stream = new TcpClientStream(this, requestId, header.getSerializer(), window, timeoutMillis);
+        streams.put(requestId, stream);
+        try {
+            writeRequest(protocolMessage);
+        } catch (IOException e) {
+            streams.remove(requestId);
+            throw new RpcException("协议消息编码错误", e);
+        }
+        // 初始额度为一个窗口
+        sendStreamCredit(requestId, header.getSerializer(), window);
+        return stream;
+    }
+
+    //发起双向流式调用，返回发送请求的观察者，服务端发来的元素在流回调线程池上交给 responseObserver
+    public StreamObserver<Object> openBidiStream(ProtocolMessage<RpcRequest> protocolMessage, long timeoutMillis,
+                                                 StreamObserver<Object> responseObserver) {
+        if (closed) {
+            throw new RpcException("连接已关闭: " + address);
+        }
+        ProtocolMessage.Header header = protocolMessage.getHeader();
+        long requestId = header.getRequestId();
+        TcpBidiStream stream = new TcpBidiStream(batchWriter, header, compressor,
+                RpcApplication.getRpcConfig().getStreamWindow(), timeoutMillis, RpcApplication.getRpcRuntime().getStreamExecutor(), () -> {
+                    bidiStreams.remove(requestId);
+                    closeIfIdle();
+                });
+        stream.start(responseObserver);
+        bidiStreams.put(requestId, stream);
+        try {
+            writeRequest(protocolMessage);
+        } catch (IOException e) {
+            bidiStreams.remove(requestId);
+            throw new RpcException("协议消息编码错误", e);
+        }
+        // 请求之后给服务端初始额度，服务端收到请求时也会给消费端初始额度
+        stream.grantInitialCredit();
+        return stream.getOutbound();
+    }
+
+    //向服务端补充流的额度（可以在任意线程调用）
+    void sendStreamCredit(long requestId, byte serializer, int credit) {
+        if (closed) {
+            return;
+        }
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        header.setSerializer(serializer);
+        header.setType((byte) ProtocolMessageTypeEnum.STREAM_CREDIT.getKey());
+        header.setRequestId(requestId);
+        try {
+            batchWriter.write(ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, credit)));
+        } catch (IOException e) {
+            log.error("流额度消息编码错误, requestId = {}", requestId, e);
+        }
+    }
+
+    //取消服务端流式调用（消费端提前停止读取、等待超时）：移除本地的流，向服务端发送 STREAM_END
+    void cancelStream(long requestId, byte serializer) {
+        if (streams.remove(requestId) == null || closed) {
+            return;
+        }
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        header.setSerializer(serializer);
+        header.setType((byte) ProtocolMessageTypeEnum.STREAM_END.getKey());
+        header.setRequestId(requestId);
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setDataType(Object.class);
+        rpcResponse.setMessage("cancelled");
+        try {
+            batchWriter.write(ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, rpcResponse)));
+        } catch (IOException e) {
+            log.error("流取消消息编码错误, requestId = {}", requestId, e);
+        }
+        closeIfIdle();
+    }
+
+    //编码并写出请求（协议 v3 时替换为携带方法 id 的请求）
+    //不需要等待上一个请求的响应即可继续发送（流水线），写出失败时连接会关闭，等待中的请求随之失败
+    private void writeRequest(ProtocolMessage<RpcRequest> protocolMessage) throws IOException {
+        protocolMessage.getHeader().setCompressor(compressor);
+        MethodSignature definingSignature = null;
+        if (isMethodIdEnabled(protocolMessage.getHeader())) {
+            definingSignature = internMethod(protocolMessage);
+        }
+        Buffer encodeBuffer = ProtocolMessageEncoder.encode(protocolMessage);
+        batchWriter.write(encodeBuffer);
+        if (definingSignature != null) {
+            definedMethodIds.put(definingSignature, protocolMessage.getBody().getMethodId());
+        }
+    }
+
+    //写出一组合并的请求（由请求合并在事件循环线程上调用），只有一个请求时按普通请求发送
+    void writeBatch(List<ProtocolMessage<RpcRequest>> protocolMessages) {
+        if (protocolMessages.size() == 1) {
+            ProtocolMessage<RpcRequest> protocolMessage = protocolMessages.get(0);
+            try {
+                writeRequest(protocolMessage);
+            } catch (IOException e) {
+                failPendingRequest(protocolMessage.getHeader().getRequestId(), new RpcException("协议消息编码错误", e));
+            }
+            return;
+        }
+        ProtocolMessage.Header firstHeader = protocolMessages.get(0).getHeader();
+        long[] requestIds = new long[protocolMessages.size()];
+        List<RpcRequest> requests = new ArrayList<>(protocolMessages.size());
+        // 同一批次中第一次出现的方法携带完整签名，之后的只携带方法 id（服务端按顺序处理）
+        Set<MethodSignature> definingSignatures = new HashSet<>();
+        int timeout = 0;
+        for (int i = 0; i < protocolMessages.size(); i++) {
+            ProtocolMessage<RpcRequest> protocolMessage = protocolMessages.get(i);
+            requestIds[i] = protocolMessage.getHeader().getRequestId();
+            timeout = Math.max(timeout, protocolMessage.getHeader().getTimeout());
+            MethodSignature methodSignature = MethodSignature.of(protocolMessage.getBody());
+            RpcRequest internedRequest = internRequest(protocolMessage.getBody(), methodSignature,
+                    definingSignatures.contains(methodSignature));
+            if (internedRequest.getMethodName() != null) {
+                definingSignatures.add(methodSignature);
+            }
+            requests.add(internedRequest);
+        }
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        header.setSerializer(firstHeader.getSerializer());
+        header.setCompressor(compressor);
+        header.setAcceptCompressor(firstHeader.getAcceptCompressor());
+        header.setType((byte) ProtocolMessageTypeEnum.BATCH_REQUEST.getKey());
+        header.setRequestId(IdUtil.getSnowflakeNextId());
+        header.setTimeout(timeout);
+        long batchId = header.getRequestId();
+        // 批次中的请求都超时后，服务端仍未响应的批次不再等待；收到批量响应时取消
+        Timeout batchTimeout = RpcApplication.getRpcRuntime().getTimeoutTimer().newTimeout(t -> pendingBatches.remove(batchId),
+                Math.max(timeout, 1), TimeUnit.MILLISECONDS);
+        pendingBatches.put(batchId, new PendingBatch(requestIds, batchTimeout));
+        try {
+            batchWriter.write(ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, new RpcBatchRequest(requests))));
+        } catch (IOException e) {
+            pendingBatches.remove(batchId);
+            batchTimeout.cancel();
+            for (long requestId : requestIds) {
+                failPendingRequest(requestId, new RpcException("协议消息编码错误", e));
+            }
+            return;
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            if (requests.get(i).getMethodName() != null) {
+                definedMethodIds.put(MethodSignature.of(protocolMessages.get(i).getBody()), requests.get(i).getMethodId());
+            }
+        }
+    }
+
+    //是否使用方法 id（JSON 序列化依赖请求中的参数类型还原参数，不使用方法 id）
+    private boolean isMethodIdEnabled(ProtocolMessage.Header header) {
+        return protocolVersion >= ProtocolConstant.PROTOCOL_VERSION && header.getSerializer() != ProtocolMessageSerializerEnum.JSON.getKey();
+    }
+
+    //把请求替换为携带方法 id 的请求（不修改调用方的请求对象，重试时可能发往其他连接）
+    //返回需要在写出后标记为已定义的方法签名，已定义时返回 null
+    private MethodSignature internMethod(ProtocolMessage<RpcRequest> protocolMessage) {
+        MethodSignature methodSignature = MethodSignature.of(protocolMessage.getBody());
+        RpcRequest internedRequest = internRequest(protocolMessage.getBody(), methodSignature, false);
+        protocolMessage.getHeader().setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        protocolMessage.setBody(internedRequest);
+        return internedRequest.getMethodName() != null ? methodSignature : null;
+    }
+
+    //构造携带方法 id 的请求，方法 id 未定义时携带完整签名（definedInBatch 表示同一批次中前面的请求已经定义过）
+    private RpcRequest internRequest(RpcRequest rpcRequest, MethodSignature methodSignature, boolean definedInBatch) {
+        RpcRequest internedRequest = new RpcRequest();
+        internedRequest.setArgs(rpcRequest.getArgs());
+        Integer methodId = definedInBatch ? assignedMethodIds.get(methodSignature) : definedMethodIds.get(methodSignature);
+        if (methodId != null) {
+            // 只携带方法 id 和参数
+            internedRequest.setServiceVersion(null);
+            internedRequest.setMethodId(methodId);
+            return internedRequest;
+        }
+        // 携带完整签名，定义方法 id（并发的首次调用可能重复定义同一个 id，不影响服务端）
+        methodId = assignedMethodIds.computeIfAbsent(methodSignature, key -> methodIdGenerator.incrementAndGet());
+        methodSignature.fill(internedRequest);
+        internedRequest.setMethodId(methodId);
+        return internedRequest;
+    }
+
+    //处理收到的消息（响应、流消息或心跳）
+    private void handleMessage(Buffer buffer) {
+        ProtocolMessage<?> decodedMessage;
+        try {
+            decodedMessage = ProtocolMessageDecoder.decode(buffer);
+        } catch (IOException e) {
+            throw new RuntimeException("协议消息解码错误");
+        }
+        // 收到任何消息都说明连接是活的
+        missedHeartbeats = 0;
+        ProtocolMessage.Header header = decodedMessage.getHeader();
+        ProtocolMessageTypeEnum messageTypeEnum = ProtocolMessageTypeEnum.getEnumByKey(header.getType());
+        if (messageTypeEnum == ProtocolMessageTypeEnum.HEART_BEAT) {
+            handleHeartbeat(header);
+            return;
+        }
+        // 服务端补充双向流的额度
+        if (messageTypeEnum == ProtocolMessageTypeEnum.STREAM_CREDIT) {
+            TcpBidiStream bidiStream = bidiStreams.get(header.getRequestId());
+            if (bidiStream != null) {
+                bidiStream.onCredit((Integer) decodedMessage.getBody());
+            }
+            return;
+        }
+        if (messageTypeEnum == ProtocolMessageTypeEnum.BATCH_RESPONSE) {
+            handleBatchResponse(header.getRequestId(), (RpcBatchResponse) decodedMessage.getBody());
+            return;
+        }
+        ProtocolMessage<RpcResponse> rpcResponseProtocolMessage = (ProtocolMessage<RpcResponse>) decodedMessage;
+        if (messageTypeEnum == ProtocolMessageTypeEnum.STREAM_DATA) {
+            TcpClientStream stream = streams.get(header.getRequestId());
+            if (stream != null) {
+                stream.onData(rpcResponseProtocolMessage.getBody().getData());
+                return;
+            }
+            TcpBidiStream bidiStream = bidiStreams.get(header.getRequestId());
+            if (bidiStream != null) {
+                bidiStream.onData(rpcResponseProtocolMessage.getBody().getData());
+            }
+            return;
+        }
+        if (messageTypeEnum == ProtocolMessageTypeEnum.STREAM_END) {
+            TcpClientStream stream = streams.remove(header.getRequestId());
+            if (stream != null) {
+                stream.onEnd(rpcResponseProtocolMessage.getBody());
+                closeIfIdle();
+                return;
+            }
+            // 双向流在两个方向都结束后自行移除
+            TcpBidiStream bidiStream = bidiStreams.get(header.getRequestId());
+            if (bidiStream != null) {
+                bidiStream.onEnd(rpcResponseProtocolMessage.getBody());
+            }
+            return;
+        }
+        handleResponse(rpcResponseProtocolMessage);
+    }
+
+    //处理响应，根据 requestId 找到对应的请求
+    private void handleResponse(ProtocolMessage<RpcResponse> rpcResponseProtocolMessage) {
+        long requestId = rpcResponseProtocolMessage.getHeader().getRequestId();
+        CompletableFuture<RpcResponse> responseFuture = pendingRequests.remove(requestId);
+        if (responseFuture == null) {
+            // 流式调用在开始发送数据之前失败（例如服务不存在）时，服务端返回的是普通响应
+            TcpClientStream stream = streams.remove(requestId);
+            if (stream != null) {
+                stream.onEnd(rpcResponseProtocolMessage.getBody());
+                closeIfIdle();
+                return;
+            }
+            TcpBidiStream bidiStream = bidiStreams.get(requestId);
+            if (bidiStream != null) {
+                bidiStream.onEnd(rpcResponseProtocolMessage.getBody());
+                return;
+            }
+            log.warn("未找到 requestId = {} 对应的请求，响应已丢弃", requestId);
+            return;
+        }
+        responseFuture.complete(rpcResponseProtocolMessage.getBody());
+    }
+
+    //处理批量响应，按顺序完成批次中的各个请求
+    private void handleBatchResponse(long batchId, RpcBatchResponse rpcBatchResponse) {
+        PendingBatch pendingBatch = pendingBatches.remove(batchId);
+        if (pendingBatch == null) {
+            log.warn("未找到批量请求 id = {} 对应的请求，响应已丢弃", batchId);
+            return;
+        }
+        pendingBatch.timeout.cancel();
+        long[] requestIds = pendingBatch.requestIds;
+        List<RpcResponse> responses = rpcBatchResponse.getResponses();
+        for (int i = 0; i < requestIds.length; i++) {
+            CompletableFuture<RpcResponse> responseFuture = pendingRequests.remove(requestIds[i]);
+            if (responseFuture == null) {
+                continue;
+            }
+            if (responses == null || i >= responses.size()) {
+                responseFuture.completeExceptionally(new RpcException("批量响应缺少第 " + i + " 个请求的响应"));
+            } else {
+                responseFuture.complete(responses.get(i));
+            }
+        }
+    }
+
+    //让单个等待中的请求失败
+    private void failPendingRequest(long requestId, Throwable cause) {
+        CompletableFuture<RpcResponse> responseFuture = pendingRequests.remove(requestId);
+        if (responseFuture != null) {
+            responseFuture.completeExceptionally(cause);
+        }
+    }
+
+    //开启心跳定时器
+    private void startHeartbeat() {
+        // 连接建立后立即发送一次心跳，完成协议版本握手
+        sendHeartbeat();
+        long heartbeatInterval = RpcApplication.getRpcConfig().getHeartbeatInterval();
+        Context context = Vertx.currentContext();
+        if (heartbeatInterval <= 0 || context == null) {
+            return;
+        }
+        vertx = context.owner();
+        heartbeatTimerId = vertx.setPeriodic(heartbeatInterval, id -> sendHeartbeat());
+    }
+
+    //发送心跳，上一次心跳仍未响应时记为一次丢失
+    private void sendHeartbeat() {
+        if (closed) {
+            return;
+        }
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        if (heartbeatSentNanos != 0 && ++missedHeartbeats >= rpcConfig.getHeartbeatMaxMissed()) {
+            log.warn("连续 {} 次心跳未响应，关闭连接: {}", missedHeartbeats, address);
+            close();
+            return;
+        }
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        // v2 服务端会原样返回心跳的消息头，v3 起的服务端返回自己支持的协议版本
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION_2);
+        header.setSerializer((byte) ProtocolMessageSerializerEnum.getEnumByValue(rpcConfig.getSerializer()).getKey());
+        // 声明希望用于请求的压缩器，服务端支持时在响应中原样返回
+        ProtocolMessageCompressorEnum compressorEnum = ProtocolMessageCompressorEnum.getEnumByValue(rpcConfig.getCompressor());
+        header.setAcceptCompressor(compressorEnum == null ? 0 : (byte) compressorEnum.getKey());
+        header.setType((byte) ProtocolMessageTypeEnum.HEART_BEAT.getKey());
+        header.setRequestId(IdUtil.getSnowflakeNextId());
+        try {
+            batchWriter.write(ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, null)));
+        } catch (IOException e) {
+            log.error("心跳消息编码错误", e);
+            return;
+        }
+        heartbeatRequestId = header.getRequestId();
+        heartbeatSentNanos = System.nanoTime();
+    }
+
+    //处理心跳响应，记录 RTT，协商协议版本和请求的压缩器
+    private void handleHeartbeat(ProtocolMessage.Header header) {
+        if (heartbeatSentNanos == 0 || header.getRequestId() != heartbeatRequestId) {
+            return;
+        }
+        byte version = (byte) Math.min(header.getVersion(), ProtocolConstant.PROTOCOL_VERSION);
+        // v2 服务端原样返回心跳的消息头，其中的压缩器不代表服务端支持
+        compressor = version >= ProtocolConstant.PROTOCOL_VERSION ? header.getAcceptCompressor() : 0;
+        protocolVersion = version;
+        nodeMetrics.recordRtt(System.nanoTime() - heartbeatSentNanos);
+        heartbeatSentNanos = 0;
+    }
+
+    //取消心跳定时器
+    private void cancelHeartbeat() {
+        if (heartbeatTimerId != -1) {
+            vertx.cancelTimer(heartbeatTimerId);
+            heartbeatTimerId = -1;
+        }
+    }
+
+    //让所有未完成的请求失败
+    private void failPendingRequests(Throwable cause) {
+        closed = true;
+        for (Long requestId : pendingRequests.keySet()) {
+            CompletableFuture<RpcResponse> responseFuture = pendingRequests.remove(requestId);
+            if (responseFuture != null) {
+                responseFuture.completeExceptionally(cause);
+            }
+        }
+        for (Long batchId : pendingBatches.keySet()) {
+            PendingBatch pendingBatch = pendingBatches.remove(batchId);
+            if (pendingBatch != null) {
+                pendingBatch.timeout.cancel();
+            }
+        }
+        for (Long requestId : streams.keySet()) {
+            TcpClientStream stream = streams.remove(requestId);
+            if (stream != null) {
+                stream.onError(cause);
+            }
+        }
+        for (Long requestId : bidiStreams.keySet()) {
+            TcpBidiStream bidiStream = bidiStreams.remove(requestId);
+            if (bidiStream != null) {
+                bidiStream.onError(cause);
+            }
+        }
+    }
+
+    //协商后的协议版本
+    byte getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    //协商后请求使用的压缩器
+    byte getCompressor() {
+        return compressor;
+    }
+
+    //进行中的流式调用个数（服务端流和双向流）
+    int getStreamCount() {
+        return streams.size() + bidiStreams.size();
+    }
+
+    //连接是否可用
+    public boolean isActive() {
+        return !closed;
+    }
+
+    //排空连接：进行中的请求和流都结束后关闭连接
+    //空闲检查放到事件循环上执行：连接刚建立完成时，等待这个连接的请求在同一次回调中才登记，不能在它们之前关闭
+    public void closeWhenIdle() {
+        draining = true;
+        if (context == null) {
+            closeIfIdle();
+        } else {
+            context.runOnContext(v -> closeIfIdle());
+        }
+    }
+
+    //正在排空且没有进行中的请求和流时关闭连接（批量请求中的各个请求也在 pendingRequests 中）
+    private void closeIfIdle() {
+        if (draining && !closed && pendingRequests.isEmpty() && streams.isEmpty() && bidiStreams.isEmpty()) {
+            close();
+        }
+    }
+
+    //关闭连接
+    public void close() {
+        closed = true;
+        // 心跳定时器在 closeHandler 中取消
+        socket.close();
+    }
+
+    //等待响应的批量请求
+    private static final class PendingBatch {
+
+        //批次中各个请求的 requestId（按顺序）
+        private final long[] requestIds;
+
+        //超时后清理批次的定时任务
+        private final Timeout timeout;
+
+        private PendingBatch(long[] requestIds, Timeout timeout) {
+            this.requestIds = requestIds;
+            this.timeout = timeout;
+        }
+    }
+}
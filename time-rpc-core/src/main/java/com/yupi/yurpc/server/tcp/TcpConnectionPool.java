@@ -0,0 +1,93 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.exception.RpcException;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.SocketAddress;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+//TCP 连接池（每个服务提供者地址对应一个连接池）
+//池中每个连接都是多路复用的长连接，请求轮询分摊到各个连接上；连接断开后在下次使用时自动重建
+public class TcpConnectionPool {
+
+    private final NetClient netClient;
+
+    //连接地址（TCP 地址或 Unix 域套接字地址）
+    private final SocketAddress remoteAddress;
+
+    //服务节点地址（host:port），用于关联节点指标
+    private final String address;
+
+    //连接槽位，每个槽位保存一个（可能尚未建立完成的）连接
+    private final AtomicReferenceArray<CompletableFuture<TcpConnection>> slots;
+
+    //当前轮询的下标
+    private final AtomicInteger currentIndex = new AtomicInteger(0);
+
+    public TcpConnectionPool(NetClient netClient, SocketAddress remoteAddress, String address, int poolSize) {
+        this.netClient = netClient;
+        this.remoteAddress = remoteAddress;
+        this.address = address;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, poolSize));
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    //获取连接
+    public CompletableFuture<TcpConnection> acquire() {
+        int slot = (currentIndex.getAndIncrement() & Integer.MAX_VALUE) % slots.length();
+        CompletableFuture<TcpConnection> current = slots.get(slot);
+        if (isUsable(current)) {
+            return current;
+        }
+        // 槽位为空或连接已失效，重新建立连接（CAS 保证同一槽位只有一个线程发起连接）
+        CompletableFuture<TcpConnection> created = new CompletableFuture<>();
+        if (!slots.compareAndSet(slot, current, created)) {
+            return slots.get(slot);
+        }
+        netClient.connect(remoteAddress, result -> {
+            if (result.succeeded()) {
+                created.complete(new TcpConnection(result.result(), address));
+            } else {
+                created.completeExceptionally(new RpcException(String.format("连接服务提供者 %s 失败", remoteAddress), result.cause()));
+            }
+        });
+        return created;
+    }
+
+    //连接正在建立中，或已建立且可用
+    private boolean isUsable(CompletableFuture<TcpConnection> connectionFuture) {
+        if (connectionFuture == null) {
+            return false;
+        }
+        if (!connectionFuture.isDone()) {
+            return true;
+        }
+        return !connectionFuture.isCompletedExceptionally() && connectionFuture.join().isActive();
+    }
+
+    //排空连接池：不再复用池中的连接，每个连接在进行中的请求和流都结束后关闭
+    public void drain() {
+        for (int i = 0; i < slots.length(); i++) {
+            CompletableFuture<TcpConnection> connectionFuture = slots.getAndSet(i, null);
+            if (connectionFuture != null) {
+                connectionFuture.thenAccept(TcpConnection::closeWhenIdle);
+            }
+        }
+    }
+
+    //关闭连接池中的所有连接
+    public void close() {
+        for (int i = 0; i < slots.length(); i++) {
+            CompletableFuture<TcpConnection> connectionFuture = slots.getAndSet(i, null);
+            if (connectionFuture != null) {
+                connectionFuture.thenAccept(TcpConnection::close);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.protocol.ProtocolMessage;
+import io.vertx.core.Context;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+//请求合并（每个连接一个）
+//任意线程发出的请求先放入队列，由连接所在的事件循环线程在下一次执行时（或等待时间窗口之后）统一取出，
+//按服务方法分组，每组最多 maxBatchSize 个请求合并为一个批量请求，只有一个请求的组按普通请求发送
+class TcpRequestBatcher {
+
+    private final TcpConnection connection;
+
+    //连接所在的事件循环上下文
+    private final Context context;
+
+    //单个批量请求最多包含的请求数
+    private final int maxBatchSize;
+
+    //收集请求的时间窗口（单位毫秒）
+    private final long windowMillis;
+
+    //待发送的请求
+    private final Queue<ProtocolMessage<RpcRequest>> pendingRequests = new ConcurrentLinkedQueue<>();
+
+    //是否已经安排了刷新任务
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    TcpRequestBatcher(TcpConnection connection, Context context, int maxBatchSize, long windowMillis) {
+        this.connection = connection;
+        this.context = context;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.windowMillis = windowMillis;
+    }
+
+    //加入待发送的请求（线程安全）
+    void add(ProtocolMessage<RpcRequest> protocolMessage) {
+        pendingRequests.offer(protocolMessage);
+        // 只有第一个放入的线程负责安排刷新任务，同一窗口内的其他请求一起发送
+        if (flushScheduled.compareAndSet(false, true)) {
+            if (windowMillis > 0) {
+                context.runOnContext(v -> context.owner().setTimer(windowMillis, id -> flush()));
+            } else {
+                context.runOnContext(v -> flush());
+            }
+        }
+    }
+
+    //在事件循环线程上按服务方法分组发送
+    private void flush() {
+        // 先重置标记再取队列，保证取完之后新放入的请求一定会触发下一次刷新
+        flushScheduled.set(false);
+        Map<String, List<ProtocolMessage<RpcRequest>>> groups = new LinkedHashMap<>();
+        ProtocolMessage<RpcRequest> protocolMessage;
+        while ((protocolMessage = pendingRequests.poll()) != null) {
+            RpcRequest rpcRequest = protocolMessage.getBody();
+            String key = rpcRequest.getServiceName() + "#" + rpcRequest.getMethodName();
+            List<ProtocolMessage<RpcRequest>> group = groups.computeIfAbsent(key, k -> new ArrayList<>());
+            group.add(protocolMessage);
+            if (group.size() >= maxBatchSize) {
+                connection.writeBatch(group);
+                groups.remove(key);
+            }
+        }
+        for (List<ProtocolMessage<RpcRequest>> group : groups.values()) {
+            connection.writeBatch(group);
+        }
+    }
+}
@@ -1,74 +1,498 @@
 package com.yupi.yurpc.server.tcp;
 
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.invoker.MethodInvoker;
+import com.yupi.yurpc.invoker.ServiceInvoker;
+import com.yupi.yurpc.model.RpcBatchRequest;
+import com.yupi.yurpc.model.RpcBatchResponse;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.protocol.*;
-import com.yupi.yurpc.registry.EtcdRegistry;
 import com.yupi.yurpc.registry.LocalRegistry;
-import com.yupi.yurpc.registry.Registry;
-import com.yupi.yurpc.registry.RegistryFactory;
+import com.yupi.yurpc.server.dispatcher.Dispatcher;
+import com.yupi.yurpc.server.dispatcher.DispatcherFactory;
+import com.yupi.yurpc.stream.StreamObserver;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.net.NetSocket;
+import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 
 //TCP请求处理器
 //实现了Handler<>接口，数据在到达的时会自动调用handle方法
+//消息解码在 Vert.x 事件循环线程上完成，服务调用交给请求分发器，避免慢方法阻塞事件循环
+@Slf4j
 public class TcpServerHandler implements Handler<NetSocket> {
 
+    //请求分发器
+    private final Dispatcher dispatcher = DispatcherFactory.getInstance(RpcApplication.getRpcConfig().getDispatcher());
+
     //处理请求
     @Override
     public void handle(NetSocket socket) {
+        //批量写出，同一批次产生的多个响应合并写出
+        TcpBatchWriter batchWriter = new TcpBatchWriter(socket);
+        //当前连接上定义的方法 id（协议 v3），只在事件循环线程上读写
+        Map<Integer, MethodSignature> methodSignatures = new HashMap<>();
+        //当前连接上进行中的服务端流，流 id（requestId） -> 服务端流
+        Map<Long, TcpServerStream> streams = new ConcurrentHashMap<>();
+        //当前连接上进行中的双向流，流 id（requestId） -> 双向流
+        Map<Long, TcpBidiStream> bidiStreams = new ConcurrentHashMap<>();
+        //连接关闭时取消所有的流
+        socket.closeHandler(v -> {
+            streams.values().forEach(TcpServerStream::cancel);
+            RpcException cause = new RpcException("连接已关闭");
+            bidiStreams.values().forEach(bidiStream -> bidiStream.onError(cause));
+        });
         TcpBufferHandlerWrapper bufferHandlerWrapper = new TcpBufferHandlerWrapper(buffer -> {
             //消息解码
-            ProtocolMessage<RpcRequest> protocolMessage;
+            ProtocolMessage<?> decodedMessage;
             try {
-                protocolMessage = (ProtocolMessage<RpcRequest>) ProtocolMessageDecoder.decode(buffer);
+                decodedMessage = ProtocolMessageDecoder.decode(buffer);
             } catch (IOException e) {
                 throw new RuntimeException("协议消息解码错误");
             }
+            //获取消息header
+            ProtocolMessage.Header header = decodedMessage.getHeader();
+            //心跳直接在事件循环线程上原样返回（客户端据此计算 RTT）
+            if (header.getType() == ProtocolMessageTypeEnum.HEART_BEAT.getKey()) {
+                doHeartbeatResponse(batchWriter, header);
+                return;
+            }
+            //消费端补充流的额度
+            if (header.getType() == ProtocolMessageTypeEnum.STREAM_CREDIT.getKey()) {
+                TcpServerStream stream = streams.get(header.getRequestId());
+                if (stream != null) {
+                    stream.addCredit((Integer) decodedMessage.getBody());
+                    return;
+                }
+                TcpBidiStream bidiStream = bidiStreams.get(header.getRequestId());
+                if (bidiStream != null) {
+                    bidiStream.onCredit((Integer) decodedMessage.getBody());
+                }
+                return;
+            }
+            //消费端取消服务端流（提前停止读取或等待超时），释放服务方法返回的迭代器
+            if (header.getType() == ProtocolMessageTypeEnum.STREAM_END.getKey()) {
+                TcpServerStream stream = streams.get(header.getRequestId());
+                if (stream != null) {
+                    stream.cancel();
+                    return;
+                }
+            }
+            //消费端在双向流上发来的元素和结束消息
+            if (header.getType() == ProtocolMessageTypeEnum.STREAM_DATA.getKey()
+                    || header.getType() == ProtocolMessageTypeEnum.STREAM_END.getKey()) {
+                TcpBidiStream bidiStream = bidiStreams.get(header.getRequestId());
+                if (bidiStream == null) {
+                    return;
+                }
+                RpcResponse streamMessage = (RpcResponse) decodedMessage.getBody();
+                if (header.getType() == ProtocolMessageTypeEnum.STREAM_DATA.getKey()) {
+                    bidiStream.onData(streamMessage.getData());
+                } else {
+                    bidiStream.onEnd(streamMessage);
+                }
+                return;
+            }
+            //批量请求：整批交给请求分发器，按顺序返回一个批量响应
+            if (header.getType() == ProtocolMessageTypeEnum.BATCH_REQUEST.getKey()) {
+                handleBatchRequest(batchWriter, header, (RpcBatchRequest) decodedMessage.getBody(), methodSignatures);
+                return;
+            }
+            ProtocolMessage<RpcRequest> protocolMessage = (ProtocolMessage<RpcRequest>) decodedMessage;
             //获取消息body,生成对应的rpc请求
             RpcRequest rpcRequest = protocolMessage.getBody();
-            //获取消息header
-            ProtocolMessage.Header header = protocolMessage.getHeader();
+            //单向请求不发送响应，失败时只记录日志
+            boolean oneWay = header.getType() == ProtocolMessageTypeEnum.ONE_WAY_REQUEST.getKey();
+            //方法 id：携带完整签名时定义，否则根据 id 还原签名
+            if (!resolveMethodId(rpcRequest, methodSignatures)) {
+                if (oneWay) {
+                    log.warn("未定义的方法 id: {}，单向请求已丢弃", rpcRequest.getMethodId());
+                    return;
+                }
+                doResponse(batchWriter, header, buildUndefinedMethodIdResponse(rpcRequest.getMethodId()));
+                return;
+            }
+            //每个请求只查找一次方法调用器，登记流和调用服务都使用它（服务或方法不存在时为 null，调用时返回异常响应）
+            MethodInvoker methodInvoker = findMethodInvoker(rpcRequest);
+            //流式方法：在事件循环线程上先登记流，之后到达的额度消息才能找到对应的流
+            TcpServerStream stream = createStreamIfNeeded(batchWriter, header, rpcRequest, methodInvoker, streams);
+            TcpBidiStream bidiStream = createBidiStreamIfNeeded(batchWriter, header, methodInvoker, bidiStreams);
+            //调用方的截止时间（收到请求时计算），排队超过截止时间的请求调用方已经放弃，不再执行
+            long deadline = header.getTimeout() > 0
+                    ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(header.getTimeout())
+                    : 0L;
 
-            //处理请求
-            //构造响应结果对象
-            RpcResponse rpcResponse = new RpcResponse();
+            //分发请求（双向流式方法不走请求分发器，见 createBidiStreamIfNeeded）
+            Executor executor = bidiStream != null
+                    ? RpcApplication.getRpcRuntime().getStreamExecutor()
+                    : task -> dispatcher.dispatch(rpcRequest.getServiceName(), task);
             try {
-                // 获取要调用的服务实现类，通过反射调用
-                Class<?> implClass = LocalRegistry.get(rpcRequest.getServiceName());
-                //通过反射获取方法
-                Method method = implClass.getMethod(rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
-                //调用implClass的实例化对象，调用方法
-                Object result = method.invoke(implClass.newInstance(), rpcRequest.getArgs());
-                //获取响应数据
-                rpcResponse.setData(result);
-                //获取方法的返回类型
-                rpcResponse.setDataType(method.getReturnType());
-                rpcResponse.setMessage("ok");
-            } catch (Exception e) {
-                e.printStackTrace();
-                rpcResponse.setMessage(e.getMessage());
-                rpcResponse.setException(e);
-            }
-
-            //发送编码
-            header.setType((byte) ProtocolMessageTypeEnum.RESPONSE.getKey());
-            header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
-            ProtocolMessage<RpcResponse> responseProtocolMessage = new ProtocolMessage<>(header, rpcResponse);
-            try {
-                Buffer encode = ProtocolMessageEncoder.encode(responseProtocolMessage);
-                socket.write(encode);
-            } catch (IOException e) {
-                throw new RuntimeException("协议消息编码错误");
+                executor.execute(() -> {
+                    if (deadline != 0L && System.nanoTime() - deadline >= 0) {
+                        log.warn("请求已超过调用方截止时间，跳过执行, requestId = {}", header.getRequestId());
+                        if (stream != null) {
+                            stream.cancel();
+                        }
+                        if (bidiStream != null) {
+                            bidiStream.abort(new RpcException("请求已超过调用方截止时间"));
+                        }
+                        return;
+                    }
+                    if (bidiStream != null) {
+                        doBidiInvoke(rpcRequest, methodInvoker, bidiStream);
+                        return;
+                    }
+                    if (oneWay) {
+                        doOneWayInvoke(rpcRequest, methodInvoker);
+                        return;
+                    }
+                    doInvoke(batchWriter, header, rpcRequest, methodInvoker, stream);
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("业务线程池已满，拒绝请求, service = {}", rpcRequest.getServiceName());
+                if (stream != null) {
+                    stream.cancel();
+                }
+                if (bidiStream != null) {
+                    bidiStream.abort(new RpcException("服务端繁忙，请稍后重试"));
+                    return;
+                }
+                if (oneWay) {
+                    return;
+                }
+                RpcResponse rpcResponse = new RpcResponse();
+                rpcResponse.setMessage("服务端繁忙，请稍后重试");
+                rpcResponse.setException(new RpcException("服务端繁忙，请稍后重试"));
+                doResponse(batchWriter, header, rpcResponse);
             }
         });
         //
         socket.handler(bufferHandlerWrapper);
     }
 
+    //根据方法 id 还原方法签名（携带完整签名时定义方法 id），方法 id 未定义时返回 false
+    private boolean resolveMethodId(RpcRequest rpcRequest, Map<Integer, MethodSignature> methodSignatures) {
+        Integer methodId = rpcRequest.getMethodId();
+        if (methodId == null) {
+            return true;
+        }
+        if (rpcRequest.getMethodName() != null) {
+            methodSignatures.put(methodId, MethodSignature.of(rpcRequest));
+            return true;
+        }
+        MethodSignature methodSignature = methodSignatures.get(methodId);
+        if (methodSignature == null) {
+            return false;
+        }
+        methodSignature.fill(rpcRequest);
+        return true;
+    }
+
+    //方法 id 未定义的响应
+    private RpcResponse buildUndefinedMethodIdResponse(Integer methodId) {
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setMessage("未定义的方法 id: " + methodId);
+        rpcResponse.setException(new RpcException("未定义的方法 id: " + methodId));
+        return rpcResponse;
+    }
+
+    //处理批量请求：在事件循环线程上按顺序还原方法签名，整批作为一个任务分发，所有请求完成后返回一个批量响应
+    //每个请求的响应与单独调用时相同，单个请求失败不影响同一批次的其他请求
+    private void handleBatchRequest(TcpBatchWriter batchWriter, ProtocolMessage.Header header, RpcBatchRequest rpcBatchRequest,
+                                    Map<Integer, MethodSignature> methodSignatures) {
+        List<RpcRequest> requests = rpcBatchRequest.getRequests();
+        if (requests == null || requests.isEmpty()) {
+            RpcResponse rpcResponse = new RpcResponse();
+            rpcResponse.setMessage("批量请求为空");
+            rpcResponse.setException(new RpcException("批量请求为空"));
+            doResponse(batchWriter, header, rpcResponse);
+            return;
+        }
+        RpcResponse[] responses = new RpcResponse[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            RpcRequest rpcRequest = requests.get(i);
+            if (!resolveMethodId(rpcRequest, methodSignatures)) {
+                responses[i] = buildUndefinedMethodIdResponse(rpcRequest.getMethodId());
+            } else if (rpcRequest.getServiceName() == null) {
+                responses[i] = new RpcResponse();
+                responses[i].setMessage("服务不存在: null");
+                responses[i].setException(new RpcException("服务不存在: null"));
+            }
+        }
+        //按第一个能还原签名的请求的服务名分发，没有可以执行的请求时直接返回各个请求的错误
+        String serviceName = getDispatchServiceName(requests, responses);
+        if (serviceName == null) {
+            doBatchResponse(batchWriter, header, new RpcBatchResponse(Arrays.asList(responses)));
+            return;
+        }
+        long deadline = header.getTimeout() > 0
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(header.getTimeout())
+                : 0L;
+        try {
+            dispatcher.dispatch(serviceName, () -> {
+                if (deadline != 0L && System.nanoTime() - deadline >= 0) {
+                    log.warn("批量请求已超过调用方截止时间，跳过执行, requestId = {}", header.getRequestId());
+                    return;
+                }
+                List<CompletableFuture<RpcResponse>> responseFutures = new ArrayList<>(requests.size());
+                for (int i = 0; i < requests.size(); i++) {
+                    responseFutures.add(responses[i] != null
+                            ? CompletableFuture.completedFuture(responses[i])
+                            : invokeForResponse(requests.get(i)));
+                }
+                CompletableFuture.allOf(responseFutures.toArray(new CompletableFuture[0])).whenComplete((v, e) -> {
+                    List<RpcResponse> rpcResponses = new ArrayList<>(responseFutures.size());
+                    for (CompletableFuture<RpcResponse> responseFuture : responseFutures) {
+                        rpcResponses.add(responseFuture.join());
+                    }
+                    doBatchResponse(batchWriter, header, new RpcBatchResponse(rpcResponses));
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("业务线程池已满，拒绝批量请求, service = {}", serviceName);
+            List<RpcResponse> rpcResponses = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                RpcResponse rpcResponse = new RpcResponse();
+                rpcResponse.setMessage("服务端繁忙，请稍后重试");
+                rpcResponse.setException(new RpcException("服务端繁忙，请稍后重试"));
+                rpcResponses.add(rpcResponse);
+            }
+            doBatchResponse(batchWriter, header, new RpcBatchResponse(rpcResponses));
+        }
+    }
+
+    //批量请求分发使用的服务名：第一个还原了签名的请求的服务名，都没有还原时返回 null
+    private String getDispatchServiceName(List<RpcRequest> requests, RpcResponse[] responses) {
+        for (int i = 0; i < requests.size(); i++) {
+            if (responses[i] == null) {
+                return requests.get(i).getServiceName();
+            }
+        }
+        return null;
+    }
+
+    //调用批量请求中的一个请求，返回的 future 总是正常完成（异常放在响应中）
+    private CompletableFuture<RpcResponse> invokeForResponse(RpcRequest rpcRequest) {
+        RpcResponse rpcResponse = new RpcResponse();
+        try {
+            MethodInvoker methodInvoker = getMethodInvoker(rpcRequest);
+            Object result = methodInvoker.invoke(rpcRequest.getArgs());
+            if (result instanceof CompletableFuture) {
+                return ((CompletableFuture<?>) result).handle((data, e) -> {
+                    RpcResponse asyncRpcResponse = new RpcResponse();
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        asyncRpcResponse.setMessage(cause.getMessage());
+                        asyncRpcResponse.setException(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+                    } else {
+                        asyncRpcResponse.setData(data);
+                        asyncRpcResponse.setDataType(methodInvoker.getDataType());
+                        asyncRpcResponse.setMessage("ok");
+                    }
+                    return asyncRpcResponse;
+                });
+            }
+            rpcResponse.setData(result);
+            rpcResponse.setDataType(methodInvoker.getDataType());
+            rpcResponse.setMessage("ok");
+        } catch (Throwable e) {
+            rpcResponse.setMessage(e.getMessage());
+            rpcResponse.setException(e instanceof Exception ? (Exception) e : new RuntimeException(e));
+        }
+        return CompletableFuture.completedFuture(rpcResponse);
+    }
+
+    //流式方法（返回 Iterator）创建服务端流，其他方法返回 null
+    private TcpServerStream createStreamIfNeeded(TcpBatchWriter batchWriter, ProtocolMessage.Header header, RpcRequest rpcRequest,
+                                                 MethodInvoker methodInvoker, Map<Long, TcpServerStream> streams) {
+        if (methodInvoker == null || !methodInvoker.isStreaming()) {
+            return null;
+        }
+        long requestId = header.getRequestId();
+        TcpServerStream stream = new TcpServerStream(batchWriter, header, dispatcher, rpcRequest.getServiceName(),
+                () -> streams.remove(requestId));
+        streams.put(requestId, stream);
+        return stream;
+    }
+
+    //双向流式方法（参数和返回值都是 StreamObserver）创建双向流并给消费端初始额度，其他方法返回 null
+    //服务方法和消费端发来的元素都在流线程池上执行，串行交给服务方法返回的观察者
+    //不使用请求分发器：发送观察者的 onNext 会阻塞等待额度，而额度消息由事件循环线程处理，direct 分发器下会把事件循环卡死
+    private TcpBidiStream createBidiStreamIfNeeded(TcpBatchWriter batchWriter, ProtocolMessage.Header header,
+                                                   MethodInvoker methodInvoker, Map<Long, TcpBidiStream> bidiStreams) {
+        if (methodInvoker == null || !methodInvoker.isBidiStreaming()) {
+            return null;
+        }
+        long requestId = header.getRequestId();
+        long timeout = header.getTimeout() > 0 ? header.getTimeout() : RpcApplication.getRpcConfig().getTimeout();
+        TcpBidiStream bidiStream = new TcpBidiStream(batchWriter, header, header.getAcceptCompressor(),
+                RpcApplication.getRpcConfig().getStreamWindow(), timeout, RpcApplication.getRpcRuntime().getStreamExecutor(), () -> bidiStreams.remove(requestId));
+        bidiStreams.put(requestId, bidiStream);
+        bidiStream.grantInitialCredit();
+        return bidiStream;
+    }
+
+    //调用双向流式方法，把发送响应的观察者传给服务方法，返回的观察者接收消费端发来的元素
+    private void doBidiInvoke(RpcRequest rpcRequest, MethodInvoker methodInvoker, TcpBidiStream bidiStream) {
+        try {
+            Object result = methodInvoker.invoke(new Object[]{bidiStream.getOutbound()});
+            if (!(result instanceof StreamObserver)) {
+                bidiStream.abort(new RpcException("双向流式方法没有返回 StreamObserver: " + rpcRequest.getMethodName()));
+                return;
+            }
+            bidiStream.start((StreamObserver<Object>) result);
+        } catch (Throwable e) {
+            log.error("双向流式方法调用失败, method = {}", rpcRequest.getMethodName(), e);
+            bidiStream.abort(e);
+        }
+    }
+
+    //调用单向方法，不发送响应
+    private void doOneWayInvoke(RpcRequest rpcRequest, MethodInvoker methodInvoker) {
+        try {
+            getMethodInvoker(rpcRequest, methodInvoker).invoke(rpcRequest.getArgs());
+        } catch (Throwable e) {
+            log.error("单向方法调用失败, service = {}, method = {}", rpcRequest.getServiceName(), rpcRequest.getMethodName(), e);
+        }
+    }
+
+    //调用服务并响应，流式方法把返回的 Iterator 交给服务端流逐个发送
+    private void doInvoke(TcpBatchWriter batchWriter, ProtocolMessage.Header header, RpcRequest rpcRequest,
+                          MethodInvoker methodInvoker, TcpServerStream stream) {
+        //构造响应结果对象
+        RpcResponse rpcResponse = new RpcResponse();
+        try {
+            //调用服务实例的方法（方法调用器在收到请求时已经查找过）
+            Object result = getMethodInvoker(rpcRequest, methodInvoker).invoke(rpcRequest.getArgs());
+            if (stream != null) {
+                if (result instanceof Iterator) {
+                    stream.start((Iterator<?>) result);
+                    return;
+                }
+                //返回 null 等情况按普通响应返回
+                stream.cancel();
+            }
+            //异步服务（返回 CompletableFuture），等结果完成后再响应，不阻塞当前线程
+            if (result instanceof CompletableFuture) {
+                ((CompletableFuture<?>) result).whenComplete((data, e) -> {
+                    RpcResponse asyncRpcResponse = new RpcResponse();
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        asyncRpcResponse.setMessage(cause.getMessage());
+                        asyncRpcResponse.setException(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+                    } else {
+                        asyncRpcResponse.setData(data);
+                        asyncRpcResponse.setDataType(methodInvoker.getDataType());
+                        asyncRpcResponse.setMessage("ok");
+                    }
+                    doResponse(batchWriter, header, asyncRpcResponse);
+                });
+                return;
+            }
+            //获取响应数据
+            rpcResponse.setData(result);
+            //获取方法的返回类型
+            rpcResponse.setDataType(methodInvoker.getDataType());
+            rpcResponse.setMessage("ok");
+        } catch (Throwable e) {
+            log.error("服务方法调用失败, service = {}, method = {}", rpcRequest.getServiceName(), rpcRequest.getMethodName(), e);
+            if (stream != null) {
+                stream.cancel();
+            }
+            rpcResponse.setMessage(e.getMessage());
+            rpcResponse.setException(e instanceof Exception ? (Exception) e : new RuntimeException(e));
+        }
+        doResponse(batchWriter, header, rpcResponse);
+    }
+
+    //查找请求对应的方法调用器，服务或方法不存在时返回 null
+    private MethodInvoker findMethodInvoker(RpcRequest rpcRequest) {
+        ServiceInvoker serviceInvoker = LocalRegistry.getInvoker(rpcRequest.getServiceName());
+        if (serviceInvoker == null) {
+            return null;
+        }
+        return serviceInvoker.getMethodInvoker(rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
+    }
+
+    //使用已经查找到的方法调用器，不存在时抛出说明原因的异常
+    private MethodInvoker getMethodInvoker(RpcRequest rpcRequest, MethodInvoker methodInvoker) {
+        return methodInvoker != null ? methodInvoker : getMethodInvoker(rpcRequest);
+    }
+
+    //获取请求对应的方法调用器
+    private MethodInvoker getMethodInvoker(RpcRequest rpcRequest) {
+        ServiceInvoker serviceInvoker = LocalRegistry.getInvoker(rpcRequest.getServiceName());
+        if (serviceInvoker == null) {
+            throw new RpcException("服务不存在: " + rpcRequest.getServiceName());
+        }
+        MethodInvoker methodInvoker = serviceInvoker.getMethodInvoker(rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
+        if (methodInvoker == null) {
+            throw new RpcException(String.format("服务 %s 不存在方法 %s", rpcRequest.getServiceName(), rpcRequest.getMethodName()));
+        }
+        return methodInvoker;
+    }
+
+    //响应心跳
+    private void doHeartbeatResponse(TcpBatchWriter batchWriter, ProtocolMessage.Header header) {
+        //返回服务端支持的协议版本，客户端据此协商
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        //消费端声明的压缩器服务端支持时原样返回，表示可以解压该压缩器压缩的请求，否则返回 0（请求不压缩）
+        if (ProtocolMessageCompressorEnum.getEnumByKey(header.getAcceptCompressor()) == null) {
+            header.setAcceptCompressor((byte) 0);
+        }
+        header.setCompressor((byte) 0);
+        header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
+        try {
+            batchWriter.write(ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, null)));
+        } catch (IOException e) {
+            throw new RuntimeException("协议消息编码错误");
+        }
+    }
+
+    //发送批量响应
+    private void doBatchResponse(TcpBatchWriter batchWriter, ProtocolMessage.Header header, RpcBatchResponse rpcBatchResponse) {
+        header.setType((byte) ProtocolMessageTypeEnum.BATCH_RESPONSE.getKey());
+        header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
+        //只使用调用方可以接受的压缩器
+        header.setCompressor(header.getAcceptCompressor());
+        try {
+            batchWriter.write(ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, rpcBatchResponse)));
+        } catch (IOException e) {
+            throw new RuntimeException("协议消息编码错误");
+        }
+    }
+
+    //发送响应（可以在业务线程中直接调用，由事件循环线程合并写出）
+    private void doResponse(TcpBatchWriter batchWriter, ProtocolMessage.Header header, RpcResponse rpcResponse) {
+        //发送编码
+        header.setType((byte) ProtocolMessageTypeEnum.RESPONSE.getKey());
+        header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
+        //只使用调用方可以接受的压缩器
+        header.setCompressor(header.getAcceptCompressor());
+        ProtocolMessage<RpcResponse> responseProtocolMessage = new ProtocolMessage<>(header, rpcResponse);
+        try {
+            Buffer encode = ProtocolMessageEncoder.encode(responseProtocolMessage);
+            batchWriter.write(encode);
+        } catch (IOException e) {
+            throw new RuntimeException("协议消息编码错误");
+        }
+    }
+
 }
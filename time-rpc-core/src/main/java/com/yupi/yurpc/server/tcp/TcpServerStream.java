@@ -0,0 +1,169 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.model.RpcResponse;
+import com.yupi.yurpc.protocol.ProtocolMessage;
+import com.yupi.yurpc.protocol.ProtocolMessageEncoder;
+import com.yupi.yurpc.protocol.ProtocolMessageStatusEnum;
+import com.yupi.yurpc.protocol.ProtocolMessageTypeEnum;
+import com.yupi.yurpc.server.dispatcher.Dispatcher;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+//服务端流（服务端流式调用的发送端）
+//服务方法返回 Iterator，元素逐个以 STREAM_DATA 消息发送，只有在消费端给出额度时才继续读取和发送（基于额度的背压）
+//读取 Iterator 可能阻塞（例如数据库游标），在请求分发器的线程上执行；同一时刻只有一个线程在读取
+@Slf4j
+public class TcpServerStream {
+
+    private final TcpBatchWriter batchWriter;
+
+    //流的消息头（流 id 即请求 id），只在持有发送权的线程上修改
+    private final ProtocolMessage.Header header;
+
+    private final Dispatcher dispatcher;
+
+    private final String serviceName;
+
+    //流结束后的回调（从连接的流表中移除）
+    private final Runnable onClose;
+
+    //剩余额度（还可以发送的元素个数）
+    private final AtomicLong credits = new AtomicLong(0);
+
+    //是否有线程正在发送（或流已结束）
+    private final AtomicBoolean pumping = new AtomicBoolean(false);
+
+    //服务方法返回的元素迭代器，服务方法执行完成前为 null
+    private volatile Iterator<?> iterator;
+
+    //连接已关闭或流已取消
+    private volatile boolean cancelled = false;
+
+    public TcpServerStream(TcpBatchWriter batchWriter, ProtocolMessage.Header header, Dispatcher dispatcher,
+                           String serviceName, Runnable onClose) {
+        this.batchWriter = batchWriter;
+        this.header = header;
+        this.dispatcher = dispatcher;
+        this.serviceName = serviceName;
+        this.onClose = onClose;
+    }
+
+    //服务方法执行完成，开始发送
+    public void start(Iterator<?> iterator) {
+        this.iterator = iterator;
+        if (cancelled) {
+            closeIterator();
+            return;
+        }
+        schedulePump();
+    }
+
+    //收到消费端的额度
+    public void addCredit(int credit) {
+        credits.addAndGet(credit);
+        schedulePump();
+    }
+
+    //取消流（连接关闭、服务方法执行失败等），不再发送任何消息
+    public void cancel() {
+        cancelled = true;
+        onClose.run();
+        if (pumping.compareAndSet(false, true)) {
+            closeIterator();
+        }
+    }
+
+    //有额度且没有线程在发送时，交给请求分发器发送
+    private void schedulePump() {
+        if (iterator == null || !pumping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            dispatcher.dispatch(serviceName, this::pump);
+        } catch (RejectedExecutionException e) {
+            finish(e);
+        }
+    }
+
+    //在额度范围内读取并发送元素，额度用完时让出线程，等消费端发送额度后再继续
+    private void pump() {
+        try {
+            while (true) {
+                while (!cancelled) {
+                    if (!iterator.hasNext()) {
+                        finish(null);
+                        return;
+                    }
+                    if (credits.get() <= 0) {
+                        break;
+                    }
+                    Object item = iterator.next();
+                    credits.decrementAndGet();
+                    RpcResponse rpcResponse = new RpcResponse();
+                    rpcResponse.setData(item);
+                    rpcResponse.setDataType(item == null ? Object.class : item.getClass());
+                    rpcResponse.setMessage("ok");
+                    send(ProtocolMessageTypeEnum.STREAM_DATA, rpcResponse);
+                }
+                if (cancelled) {
+                    closeIterator();
+                    return;
+                }
+                // 额度用完，释放发送权；释放之后又收到额度时重新获取发送权继续发送
+                pumping.set(false);
+                if (credits.get() <= 0 || !pumping.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            finish(e);
+        }
+    }
+
+    //结束流，发送 STREAM_END（携带异常信息）
+    private void finish(Throwable e) {
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setDataType(Object.class);
+        if (e == null) {
+            rpcResponse.setMessage("ok");
+        } else {
+            log.error("流式调用执行失败, requestId = {}", header.getRequestId(), e);
+            rpcResponse.setMessage(e.getMessage());
+            rpcResponse.setException(e instanceof Exception ? (Exception) e : new RuntimeException(e));
+        }
+        try {
+            send(ProtocolMessageTypeEnum.STREAM_END, rpcResponse);
+        } catch (IOException ex) {
+            log.error("流结束消息编码错误, requestId = {}", header.getRequestId(), ex);
+        }
+        onClose.run();
+        closeIterator();
+    }
+
+    //发送流消息
+    private void send(ProtocolMessageTypeEnum type, RpcResponse rpcResponse) throws IOException {
+        header.setType((byte) type.getKey());
+        header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
+        //只使用调用方可以接受的压缩器
+        header.setCompressor(header.getAcceptCompressor());
+        batchWriter.write(ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, rpcResponse)));
+    }
+
+    //释放迭代器持有的资源
+    private void closeIterator() {
+        Iterator<?> current = iterator;
+        if (current instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) current).close();
+            } catch (Exception e) {
+                log.warn("关闭流迭代器失败, requestId = {}", header.getRequestId(), e);
+            }
+        }
+    }
+}
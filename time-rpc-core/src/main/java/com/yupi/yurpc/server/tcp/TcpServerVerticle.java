@@ -0,0 +1,54 @@
+package com.yupi.yurpc.server.tcp;
+
+import cn.hutool.core.util.StrUtil;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetServerOptions;
+import io.vertx.core.net.SocketAddress;
+import lombok.extern.slf4j.Slf4j;
+
+
+//TCP 服务器 Verticle
+//部署多个实例时，每个实例绑定一个事件循环线程，Vert.x 把同一端口上新建立的连接轮询分配给各个实例
+@Slf4j
+public class TcpServerVerticle extends AbstractVerticle {
+
+    //监听端口
+    private final int port;
+
+    //服务器配置
+    private final NetServerOptions options;
+
+    //Unix 域套接字路径（为空表示不监听）
+    private final String domainSocketPath;
+
+    public TcpServerVerticle(int port, NetServerOptions options, String domainSocketPath) {
+        this.port = port;
+        this.options = options;
+        this.domainSocketPath = domainSocketPath;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        // 创建 TCP 服务器，处理请求并监听指定端口
+        NetServer server = vertx.createNetServer(options);
+        server.connectHandler(new TcpServerHandler());
+        Future<NetServer> listenFuture = server.listen(port);
+
+        // 同时监听 Unix 域套接字，供同主机的消费者使用
+        if (StrUtil.isNotBlank(domainSocketPath) && vertx.isNativeTransportEnabled()) {
+            NetServer domainSocketServer = vertx.createNetServer(options);
+            domainSocketServer.connectHandler(new TcpServerHandler());
+            listenFuture = listenFuture.compose(s -> domainSocketServer.listen(SocketAddress.domainSocketAddress(domainSocketPath)));
+        }
+        listenFuture.onComplete(result -> {
+            if (result.succeeded()) {
+                startPromise.complete();
+            } else {
+                startPromise.fail(result.cause());
+            }
+        });
+    }
+}
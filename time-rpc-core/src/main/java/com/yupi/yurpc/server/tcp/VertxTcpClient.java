@@ -1,79 +1,216 @@
 package com.yupi.yurpc.server.tcp;
 
+import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
 import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.metrics.NodeMetrics;
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 import com.yupi.yurpc.protocol.*;
-import io.vertx.core.Vertx;
-import io.vertx.core.buffer.Buffer;
+import com.yupi.yurpc.stream.StreamObserver;
+import com.yupi.yurpc.utils.HostUtils;
+import io.netty.util.Timeout;
 import io.vertx.core.net.NetClient;
-import io.vertx.core.net.NetSocket;
+import io.vertx.core.net.SocketAddress;
 
-import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 //Vertx TCP请求客户端
+//使用运行时共享的 Vert.x 实例和 NetClient，每个服务提供者地址维护一个长连接池，多个请求复用同一个连接
 public class VertxTcpClient {
 
-    //发送请求
+    //连接池，服务提供者地址（host:port 或 unix:路径） -> 连接池
+    private static final Map<String, TcpConnectionPool> connectionPoolMap = new ConcurrentHashMap<>();
+
+    static {
+        // 节点下线时排空它的连接池
+        NodeMetricsRegistry.addRemovalListener(VertxTcpClient::removeConnectionPool);
+    }
+
+    //发送请求（同步，阻塞等待响应），使用全局超时时间
     public static RpcResponse doRequest(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo) throws InterruptedException, ExecutionException {
-        //创建 Vert.x 实例
-        Vertx vertx = Vertx.vertx();
-        //创建 NetClient
-        NetClient netClient = vertx.createNetClient();
-
-        //
-        CompletableFuture<RpcResponse> responseFuture = new CompletableFuture<>();
-        netClient.connect(serviceMetaInfo.getServicePort(), serviceMetaInfo.getServiceHost(), result -> {
-                if (!result.succeeded()) {
-                    System.err.println("Failed to connect to TCP server");
-                    return;
-                }
-                NetSocket socket = result.result();
-                // 发送数据
-                // 构造消息
-                ProtocolMessage<RpcRequest> protocolMessage = new ProtocolMessage<>();
-                ProtocolMessage.Header header = new ProtocolMessage.Header();
-                header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
-                header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
-                header.setSerializer((byte) ProtocolMessageSerializerEnum.getEnumByValue(RpcApplication.getRpcConfig().getSerializer()).getKey());
-                header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
-                // 生成全局请求 ID
-                header.setRequestId(IdUtil.getSnowflakeNextId());
-                protocolMessage.setHeader(header);
-                protocolMessage.setBody(rpcRequest);
-
-                // 编码请求
-                try {
-                    Buffer encodeBuffer = ProtocolMessageEncoder.encode(protocolMessage);
-                    socket.write(encodeBuffer);
-                } catch (IOException e) {
-                    throw new RuntimeException("协议消息编码错误");
-                }
-
-                // 接收响应
-                TcpBufferHandlerWrapper bufferHandlerWrapper = new TcpBufferHandlerWrapper(
-                        buffer -> {
-                            try {
-                                ProtocolMessage<RpcResponse> rpcResponseProtocolMessage =
-                                        (ProtocolMessage<RpcResponse>) ProtocolMessageDecoder.decode(buffer);
-                                responseFuture.complete(rpcResponseProtocolMessage.getBody());
-                            } catch (IOException e) {
-                                throw new RuntimeException("协议消息解码错误");
-                            }
-                        }
-                );
-                socket.handler(bufferHandlerWrapper);
-
-            });
-
-        RpcResponse rpcResponse = responseFuture.get();
-        // 记得关闭连接
-        netClient.close();
-        return rpcResponse;
+        return doRequest(rpcRequest, serviceMetaInfo, RpcApplication.getRpcConfig().getTimeout());
+    }
+
+    //发送请求（同步，阻塞等待响应）
+    public static RpcResponse doRequest(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo, long timeoutMillis) throws InterruptedException, ExecutionException {
+        return doRequest(rpcRequest, serviceMetaInfo, timeoutMillis, false);
+    }
+
+    //发送请求（同步，阻塞等待响应），batch 为 true 时与同一时间窗口内的同一服务方法的请求合并发送
+    public static RpcResponse doRequest(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo, long timeoutMillis, boolean batch) throws InterruptedException, ExecutionException {
+        return doRequestAsync(rpcRequest, serviceMetaInfo, timeoutMillis, batch).get();
+    }
+
+    //发送请求（异步），使用全局超时时间
+    public static CompletableFuture<RpcResponse> doRequestAsync(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo) {
+        return doRequestAsync(rpcRequest, serviceMetaInfo, RpcApplication.getRpcConfig().getTimeout());
+    }
+
+    //发送请求（异步），响应 future 直接在 Vert.x 的响应处理器中完成，不占用调用线程
+    //超时时间从调用开始计算（包含获取连接的时间），发送时把剩余时间写入消息头
+    public static CompletableFuture<RpcResponse> doRequestAsync(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo, long timeoutMillis) {
+        return doRequestAsync(rpcRequest, serviceMetaInfo, timeoutMillis, false);
+    }
+
+    //发送请求（异步），batch 为 true 时与同一时间窗口内的同一服务方法的请求合并发送
+    public static CompletableFuture<RpcResponse> doRequestAsync(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo, long timeoutMillis, boolean batch) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        ProtocolMessage<RpcRequest> protocolMessage = buildProtocolMessage(rpcRequest);
+        ProtocolMessage.Header header = protocolMessage.getHeader();
+        // 统计节点上进行中的请求数（供 leastActive 负载均衡使用），请求结束时减一
+        NodeMetrics nodeMetrics = NodeMetricsRegistry.getMetrics(serviceMetaInfo);
+        nodeMetrics.incrementActive();
+
+        // 从连接池获取连接并发送请求
+        CompletableFuture<TcpConnection> connectionFuture = getConnectionPool(serviceMetaInfo).acquire();
+        CompletableFuture<RpcResponse> responseFuture = connectionFuture
+                .thenCompose(connection -> {
+                    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMillis <= 0) {
+                        CompletableFuture<RpcResponse> timeoutFuture = new CompletableFuture<>();
+                        timeoutFuture.completeExceptionally(new RpcException(String.format("请求超时（%s ms）: 获取连接耗时过长", timeoutMillis)));
+                        return timeoutFuture;
+                    }
+                    header.setTimeout((int) Math.min(remainingMillis, Integer.MAX_VALUE));
+                    return batch
+                            ? connection.sendBatched(protocolMessage, remainingMillis)
+                            : connection.send(protocolMessage, remainingMillis);
+                });
+        // 连接正在建立时按本次调用的超时时间计时，不等到 NetClient 的连接超时（全局超时时间）；连接建立后由连接上的超时任务计时
+        if (!connectionFuture.isDone()) {
+            Timeout acquireTimeout = RpcApplication.getRpcRuntime().getTimeoutTimer().newTimeout(t -> responseFuture.completeExceptionally(
+                    new RpcException(String.format("请求超时（%s ms）: 获取连接耗时过长", timeoutMillis))), timeoutMillis, TimeUnit.MILLISECONDS);
+            connectionFuture.whenComplete((connection, e) -> acquireTimeout.cancel());
+        }
+        responseFuture.whenComplete((rpcResponse, e) -> nodeMetrics.decrementActive());
+        return responseFuture;
+    }
+
+    //发送单向请求，请求写入连接后立即返回，timeoutMillis 为获取连接的超时时间
+    public static void doOneWayRequest(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo, long timeoutMillis) throws InterruptedException, ExecutionException {
+        ProtocolMessage<RpcRequest> protocolMessage = buildProtocolMessage(rpcRequest);
+        TcpConnection connection;
+        try {
+            connection = getConnectionPool(serviceMetaInfo).acquire().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RpcException(String.format("请求超时（%s ms）: 获取连接耗时过长", timeoutMillis), e);
+        }
+        protocolMessage.getHeader().setTimeout((int) Math.min(timeoutMillis, Integer.MAX_VALUE));
+        connection.sendOneWay(protocolMessage, timeoutMillis);
+    }
+
+    //发起服务端流式调用，返回逐个读取元素的阻塞迭代器，timeoutMillis 为建立连接和等待每个元素的超时时间
+    public static Iterator<Object> doStreamRequest(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo, long timeoutMillis) throws InterruptedException, ExecutionException {
+        ProtocolMessage<RpcRequest> protocolMessage = buildProtocolMessage(rpcRequest);
+        TcpConnection connection;
+        try {
+            connection = getConnectionPool(serviceMetaInfo).acquire().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RpcException(String.format("请求超时（%s ms）: 获取连接耗时过长", timeoutMillis), e);
+        }
+        protocolMessage.getHeader().setTimeout((int) Math.min(timeoutMillis, Integer.MAX_VALUE));
+        return connection.openStream(protocolMessage, timeoutMillis);
+    }
+
+    //发起双向流式调用，返回发送请求的观察者，响应交给 responseObserver，timeoutMillis 为建立连接和等待对端额度的超时时间
+    public static StreamObserver<Object> doBidiStreamRequest(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo, long timeoutMillis,
+                                                             StreamObserver<Object> responseObserver) throws InterruptedException, ExecutionException {
+        ProtocolMessage<RpcRequest> protocolMessage = buildProtocolMessage(rpcRequest);
+        TcpConnection connection;
+        try {
+            connection = getConnectionPool(serviceMetaInfo).acquire().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RpcException(String.format("请求超时（%s ms）: 获取连接耗时过长", timeoutMillis), e);
+        }
+        protocolMessage.getHeader().setTimeout((int) Math.min(timeoutMillis, Integer.MAX_VALUE));
+        return connection.openBidiStream(protocolMessage, timeoutMillis, responseObserver);
+    }
+
+    //构造请求消息
+    private static ProtocolMessage<RpcRequest> buildProtocolMessage(RpcRequest rpcRequest) {
+        ProtocolMessage<RpcRequest> protocolMessage = new ProtocolMessage<>();
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        header.setSerializer((byte) ProtocolMessageSerializerEnum.getEnumByValue(RpcApplication.getRpcConfig().getSerializer()).getKey());
+        // 声明可以接受配置的压缩器压缩的响应；请求是否压缩由连接根据握手结果决定
+        header.setAcceptCompressor(getCompressorKey());
+        header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
+        // 生成全局请求 ID，用于在共享连接上匹配响应
+        header.setRequestId(IdUtil.getSnowflakeNextId());
+        protocolMessage.setHeader(header);
+        protocolMessage.setBody(rpcRequest);
+        return protocolMessage;
+    }
+
+    //获取配置的压缩器对应的协议 key
+    private static byte getCompressorKey() {
+        ProtocolMessageCompressorEnum compressorEnum = ProtocolMessageCompressorEnum.getEnumByValue(RpcApplication.getRpcConfig().getCompressor());
+        if (compressorEnum == null) {
+            throw new RpcException("压缩器不存在: " + RpcApplication.getRpcConfig().getCompressor());
+        }
+        return (byte) compressorEnum.getKey();
+    }
+
+    //获取服务提供者对应的连接池，同主机的服务提供者优先通过 Unix 域套接字连接
+    private static TcpConnectionPool getConnectionPool(ServiceMetaInfo serviceMetaInfo) {
+        String address = NodeMetricsRegistry.getAddress(serviceMetaInfo);
+        NetClient netClient = RpcApplication.getRpcRuntime().getNetClient();
+        int poolSize = RpcApplication.getRpcConfig().getConnectionPoolSize();
+        if (isSameHostWithDomainSocket(serviceMetaInfo)) {
+            String path = serviceMetaInfo.getDomainSocketPath();
+            String key = "unix:" + path;
+            TcpConnectionPool connectionPool = connectionPoolMap.get(key);
+            if (connectionPool != null) {
+                return connectionPool;
+            }
+            // 套接字文件可见时才使用（只在第一次创建连接池时检查）
+            if (FileUtil.exist(path)) {
+                return connectionPoolMap.computeIfAbsent(key, k ->
+                        new TcpConnectionPool(netClient, SocketAddress.domainSocketAddress(path), address, poolSize));
+            }
+        }
+        return connectionPoolMap.computeIfAbsent(address, key ->
+                new TcpConnectionPool(netClient, SocketAddress.inetSocketAddress(serviceMetaInfo.getServicePort(), serviceMetaInfo.getServiceHost()), address, poolSize));
+    }
+
+    //服务提供者开启了 Unix 域套接字、与当前进程在同一主机上，且本地传输可用
+    private static boolean isSameHostWithDomainSocket(ServiceMetaInfo serviceMetaInfo) {
+        return StrUtil.isNotBlank(serviceMetaInfo.getDomainSocketPath())
+                && RpcApplication.getRpcRuntime().getVertx().isNativeTransportEnabled()
+                && HostUtils.getHostId().equals(serviceMetaInfo.getHostId());
+    }
+
+    //移除节点的连接池（TCP 和 Unix 域套接字连接池都按节点地址匹配）
+    //移除后不再分配新的请求，已经发出的请求正常等待响应，连接空闲后再关闭
+    private static void removeConnectionPool(String address) {
+        connectionPoolMap.entrySet().removeIf(entry -> {
+            if (!entry.getValue().getAddress().equals(address)) {
+                return false;
+            }
+            entry.getValue().drain();
+            return true;
+        });
+    }
+
+    //关闭所有连接并清理对应的节点指标（NetClient 由运行时关闭）
+    public static void close() {
+        for (TcpConnectionPool connectionPool : connectionPoolMap.values()) {
+            connectionPool.close();
+            NodeMetricsRegistry.remove(connectionPool.getAddress());
+        }
+        connectionPoolMap.clear();
     }
 }
@@ -1,32 +1,125 @@
 package com.yupi.yurpc.server.tcp;
 
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.exception.RpcException;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
-import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetServerOptions;
+import io.vertx.core.net.NetSocket;
+import io.vertx.core.net.SocketAddress;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 
 //Vertx TCP 服务器
 @Slf4j
 public class VertxTcpServer{
 
-    public void doStart(int port) {
-        // 创建 Vert.x 实例
-        Vertx vertx = Vertx.vertx();
+    //检查 Unix 域套接字是否有进程在监听的超时时间（单位毫秒）
+    private static final long DOMAIN_SOCKET_PROBE_TIMEOUT_MILLIS = 1000;
 
-        // 创建 TCP 服务器
-        NetServer server = vertx.createNetServer();
+    public void doStart(int port) {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        // 使用运行时共享的 Vert.x 实例（事件循环线程数、本地传输在运行时中配置）
+        Vertx vertx = RpcApplication.getRpcRuntime().getVertx();
 
-        // 处理请求
-        server.connectHandler(new TcpServerHandler());
+        // TCP 服务器配置，长时间没有读写（包括心跳）的连接自动关闭
+        NetServerOptions options = new NetServerOptions()
+                .setIdleTimeout((int) rpcConfig.getServerIdleTimeout())
+                .setIdleTimeoutUnit(TimeUnit.MILLISECONDS)
+                .setAcceptBacklog(rpcConfig.getAcceptBacklog())
+                .setTcpNoDelay(rpcConfig.isTcpNoDelay());
+        if (rpcConfig.getSendBufferSize() > 0) {
+            options.setSendBufferSize(rpcConfig.getSendBufferSize());
+        }
+        if (rpcConfig.getReceiveBufferSize() > 0) {
+            options.setReceiveBufferSize(rpcConfig.getReceiveBufferSize());
+        }
 
-        // 启动 TCP 服务器并监听指定端口
-        server.listen(port, result -> {
-            if (result.succeeded()) {
-                log.info("TCP server started on port " + port);
+        // Unix 域套接字需要本地传输
+        String domainSocketPath = rpcConfig.getDomainSocketPath();
+        if (StrUtil.isNotBlank(domainSocketPath)) {
+            if (vertx.isNativeTransportEnabled()) {
+                // 清理上次进程退出时遗留的套接字文件，否则无法监听
+                removeStaleDomainSocket(domainSocketPath);
             } else {
-                log.info("Failed to start TCP server: " + result.cause());
+                log.warn("本地传输不可用，不监听 Unix 域套接字: {}", domainSocketPath);
             }
-        });
+        }
+
+        // 部署多个服务器实例，共享同一个端口，默认与 CPU 核数相同
+        int instances = rpcConfig.getServerInstances() > 0
+                ? rpcConfig.getServerInstances()
+                : Runtime.getRuntime().availableProcessors();
+        vertx.deployVerticle(() -> new TcpServerVerticle(port, options, domainSocketPath),
+                new DeploymentOptions().setInstances(instances), result -> {
+                    if (result.succeeded()) {
+                        log.info("TCP server started on port {} with {} instances, native transport = {}",
+                                port, instances, vertx.isNativeTransportEnabled());
+                    } else {
+                        log.info("Failed to start TCP server: " + result.cause());
+                    }
+                });
+    }
+
+    //清理遗留的 Unix 域套接字文件：只删除没有进程在监听的套接字文件
+    //路径是目录或普通文件（多半是配置错误）、或者已有进程在监听时拒绝启动，不删除任何东西
+    private void removeStaleDomainSocket(String domainSocketPath) {
+        Path path = Paths.get(domainSocketPath);
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            throw new RpcException("读取 Unix 域套接字路径失败: " + domainSocketPath, e);
+        }
+        // 套接字文件既不是目录、普通文件，也不是符号链接
+        if (!attributes.isOther()) {
+            throw new RpcException("Unix 域套接字路径已存在且不是套接字文件，拒绝启动: " + domainSocketPath);
+        }
+        if (isDomainSocketAlive(domainSocketPath)) {
+            throw new RpcException("Unix 域套接字已有进程在监听，拒绝启动: " + domainSocketPath);
+        }
+        try {
+            Files.delete(path);
+        } catch (IOException e) {
+            throw new RpcException("删除遗留的 Unix 域套接字文件失败: " + domainSocketPath, e);
+        }
+    }
+
+    //是否有进程在监听该 Unix 域套接字（能连上即为在监听）
+    private boolean isDomainSocketAlive(String domainSocketPath) {
+        NetClient netClient = RpcApplication.getRpcRuntime().getNetClient();
+        try {
+            NetSocket socket = netClient.connect(SocketAddress.domainSocketAddress(domainSocketPath))
+                    .toCompletionStage().toCompletableFuture()
+                    .get(DOMAIN_SOCKET_PROBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            socket.close();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException("检查 Unix 域套接字时被中断", e);
+        } catch (ExecutionException e) {
+            // 连接被拒绝：套接字文件是遗留的
+            return false;
+        } catch (TimeoutException e) {
+            // 有进程持有但没有及时接受连接，按在监听处理，避免删除正在使用的套接字
+            return true;
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,18 @@
+package com.yupi.yurpc.stream;
+
+
+//流观察者（双向流式调用）
+//服务接口方法声明为 StreamObserver<Req> method(StreamObserver<Resp> responseObserver) 即为双向流式方法：
+//消费端调用时传入接收响应的观察者，得到发送请求的观察者；服务端方法收到发送响应的观察者，返回接收请求的观察者
+//同一个观察者的方法不能被多个线程并发调用；发送方没有额度时 onNext 会阻塞，直到接收方处理了之前的元素
+public interface StreamObserver<T> {
+
+    //收到（发送）一个元素
+    void onNext(T value);
+
+    //流异常结束
+    void onError(Throwable t);
+
+    //流正常结束
+    void onCompleted();
+}
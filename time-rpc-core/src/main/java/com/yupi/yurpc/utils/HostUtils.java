@@ -0,0 +1,26 @@
+package com.yupi.yurpc.utils;
+
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yurpc.RpcApplication;
+
+
+//主机工具类
+public class HostUtils {
+
+    //本机主机名（只解析一次）
+    private static volatile String localHostName;
+
+    //获取主机标识，优先使用配置的值，未配置时使用本机主机名（同一个 Pod 中的容器主机名相同）
+    //服务提供者与消费者的主机标识相同时，才会尝试通过 Unix 域套接字连接
+    public static String getHostId() {
+        String hostId = RpcApplication.getRpcConfig().getHostId();
+        if (StrUtil.isNotBlank(hostId)) {
+            return hostId;
+        }
+        if (localHostName == null) {
+            localHostName = NetUtil.getLocalHostName();
+        }
+        return localHostName;
+    }
+}
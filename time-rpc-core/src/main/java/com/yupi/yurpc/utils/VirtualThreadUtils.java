@@ -0,0 +1,41 @@
+package com.yupi.yurpc.utils;
+
+import com.yupi.yurpc.exception.RpcException;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+//虚拟线程工具类（需要 JDK 21 及以上）
+//通过反射调用虚拟线程 API，框架本身仍然可以使用 JDK 8 编译和运行
+public class VirtualThreadUtils {
+
+    //Executors.newVirtualThreadPerTaskExecutor 方法，当前 JDK 不支持时为 null
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findMethod();
+
+    private static Method findMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    //当前 JDK 是否支持虚拟线程
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    //创建执行器，每个任务都在一个新的虚拟线程上执行
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!isSupported()) {
+            throw new RpcException("当前 JDK 不支持虚拟线程，需要 JDK 21 及以上版本: " + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new RpcException("创建虚拟线程执行器失败", e);
+        }
+    }
+}
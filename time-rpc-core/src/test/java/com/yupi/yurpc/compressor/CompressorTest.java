@@ -0,0 +1,31 @@
+package com.yupi.yurpc.compressor;
+
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.StrUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+
+//压缩器测试
+public class CompressorTest {
+
+    @Test
+    public void testCompressAndDecompress() throws IOException {
+        byte[] bytes = StrUtil.repeat("{\"id\":1,\"userName\":\"time-rpc\"}", 200).getBytes(StandardCharsets.UTF_8);
+        for (String key : new String[]{CompressorKeys.NONE, CompressorKeys.DEFLATE, CompressorKeys.GZIP}) {
+            Compressor compressor = CompressorFactory.getInstance(key);
+            byte[] compressedBytes = compressor.compress(bytes);
+            if (!CompressorKeys.NONE.equals(key)) {
+                Assert.assertTrue(compressedBytes.length < bytes.length);
+            }
+            try (InputStream inputStream = compressor.decompress(new ByteArrayInputStream(compressedBytes))) {
+                Assert.assertArrayEquals(bytes, IoUtil.readBytes(inputStream, false));
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.yupi.yurpc.invoker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+//服务调用器测试
+public class ServiceInvokerTest {
+
+    public static class GreetingService {
+
+        public String greet(String name) {
+            return "hello " + name;
+        }
+
+        public String greet(String name, int times) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < times; i++) {
+                builder.append(name);
+            }
+            return builder.toString();
+        }
+
+        public int count() {
+            return 1;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("fail");
+        }
+    }
+
+    final ServiceInvoker serviceInvoker = new ServiceInvoker(new GreetingService());
+
+    @Test
+    public void invoke() throws Throwable {
+        MethodInvoker greet = serviceInvoker.getMethodInvoker("greet", new Class[]{String.class});
+        Assert.assertEquals("hello time", greet.invoke(new Object[]{"time"}));
+
+        MethodInvoker greetTimes = serviceInvoker.getMethodInvoker("greet", new Class[]{String.class, int.class});
+        Assert.assertEquals("aaa", greetTimes.invoke(new Object[]{"a", 3}));
+
+        // 无参方法，参数列表为 null
+        MethodInvoker count = serviceInvoker.getMethodInvoker("count", null);
+        Assert.assertEquals(1, count.invoke(null));
+        Assert.assertEquals(int.class, count.getDataType());
+
+        Assert.assertNull(serviceInvoker.getMethodInvoker("greet", new Class[]{Integer.class}));
+        Assert.assertNull(serviceInvoker.getMethodInvoker("toString", new Class[0]));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void invokeThrowsOriginalException() throws Throwable {
+        serviceInvoker.getMethodInvoker("fail", new Class[0]).invoke(null);
+    }
+}
@@ -1,13 +1,19 @@
 package com.yupi.yurpc.loadbalancer;
 
+import com.yupi.yurpc.metrics.NodeMetrics;
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 负载均衡器测试
@@ -48,4 +54,179 @@ public class LoadBalancerTest {
         System.out.println(serviceMetaInfo);
         Assert.assertNotNull(serviceMetaInfo);
     }
-}
\ No newline at end of file
+
+    //最少活跃请求：总是选择进行中请求数最少的节点
+    @Test
+    public void selectLeastActive() {
+        ServiceMetaInfo busy = buildServiceMetaInfo("least-active-busy", 8080);
+        ServiceMetaInfo idle = buildServiceMetaInfo("least-active-idle", 8080);
+        List<ServiceMetaInfo> serviceMetaInfoList = Arrays.asList(busy, idle);
+        NodeMetrics busyMetrics = NodeMetricsRegistry.getMetrics(busy);
+        busyMetrics.incrementActive();
+        busyMetrics.incrementActive();
+        try {
+            LoadBalancer leastActiveLoadBalancer = new LeastActiveLoadBalancer();
+            for (int i = 0; i < 10; i++) {
+                Assert.assertSame(idle, leastActiveLoadBalancer.select(new HashMap<>(), serviceMetaInfoList));
+            }
+        } finally {
+            busyMetrics.decrementActive();
+            busyMetrics.decrementActive();
+        }
+    }
+
+    //Peak EWMA：只有两个节点时总是比较这两个节点，选择延迟较低的一个
+    @Test
+    public void selectPeakEwma() {
+        ServiceMetaInfo slow = buildServiceMetaInfo("peak-ewma-slow", 8080);
+        ServiceMetaInfo fast = buildServiceMetaInfo("peak-ewma-fast", 8080);
+        List<ServiceMetaInfo> serviceMetaInfoList = Arrays.asList(slow, fast);
+        LoadBalancer peakEwmaLoadBalancer = new PeakEwmaLoadBalancer();
+        peakEwmaLoadBalancer.onResponse(slow, TimeUnit.MILLISECONDS.toNanos(200), true);
+        peakEwmaLoadBalancer.onResponse(fast, TimeUnit.MILLISECONDS.toNanos(2), true);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(fast, peakEwmaLoadBalancer.select(new HashMap<>(), serviceMetaInfoList));
+        }
+    }
+
+    //Peak EWMA：快速失败的节点不能因为耗时短而被优先选择
+    @Test
+    public void selectPeakEwmaPenalizesFailures() {
+        ServiceMetaInfo failing = buildServiceMetaInfo("peak-ewma-failing", 8080);
+        ServiceMetaInfo slow = buildServiceMetaInfo("peak-ewma-slow-healthy", 8080);
+        List<ServiceMetaInfo> serviceMetaInfoList = Arrays.asList(failing, slow);
+        LoadBalancer peakEwmaLoadBalancer = new PeakEwmaLoadBalancer();
+        peakEwmaLoadBalancer.onResponse(slow, TimeUnit.MILLISECONDS.toNanos(200), true);
+        peakEwmaLoadBalancer.onResponse(failing, TimeUnit.MILLISECONDS.toNanos(1), false);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(slow, peakEwmaLoadBalancer.select(new HashMap<>(), serviceMetaInfoList));
+        }
+    }
+
+    //节点下线后指标和延迟估计一起清理，重新上线的同地址节点从零开始
+    @Test
+    public void removeNodeMetrics() {
+        ServiceMetaInfo restarted = buildServiceMetaInfo("peak-ewma-restarted", 8080);
+        ServiceMetaInfo slow = buildServiceMetaInfo("peak-ewma-restarted-slow", 8080);
+        List<ServiceMetaInfo> serviceMetaInfoList = Arrays.asList(restarted, slow);
+        LoadBalancer peakEwmaLoadBalancer = new PeakEwmaLoadBalancer();
+        peakEwmaLoadBalancer.onResponse(slow, TimeUnit.MILLISECONDS.toNanos(200), true);
+        peakEwmaLoadBalancer.onResponse(restarted, TimeUnit.MILLISECONDS.toNanos(1), false);
+        NodeMetrics nodeMetrics = NodeMetricsRegistry.getMetrics(restarted);
+
+        NodeMetricsRegistry.remove(NodeMetricsRegistry.getAddress(restarted));
+        Assert.assertNotSame(nodeMetrics, NodeMetricsRegistry.getMetrics(restarted));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(restarted, peakEwmaLoadBalancer.select(new HashMap<>(), serviceMetaInfoList));
+        }
+    }
+
+    //一致性哈希：同一路由键总是选中同一节点，不同路由键分散到各个节点，移除节点只影响原来落在该节点上的键
+    @Test
+    public void selectConsistentHashByKey() {
+        List<ServiceMetaInfo> serviceMetaInfoList = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            serviceMetaInfoList.add(buildServiceMetaInfo("consistent-hash-" + i, 8080));
+        }
+        LoadBalancer consistentHashLoadBalancer = new ConsistentHashLoadBalancer();
+        Map<String, ServiceMetaInfo> selected = new HashMap<>();
+        Set<ServiceMetaInfo> usedNodes = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            String key = "user-" + i;
+            ServiceMetaInfo serviceMetaInfo = consistentHashLoadBalancer.select(buildHashKeyParams(key), serviceMetaInfoList);
+            Assert.assertSame(serviceMetaInfo, consistentHashLoadBalancer.select(buildHashKeyParams(key), serviceMetaInfoList));
+            selected.put(key, serviceMetaInfo);
+            usedNodes.add(serviceMetaInfo);
+        }
+        Assert.assertEquals(4, usedNodes.size());
+
+        ServiceMetaInfo removed = serviceMetaInfoList.get(0);
+        List<ServiceMetaInfo> remaining = new ArrayList<>(serviceMetaInfoList.subList(1, 4));
+        for (Map.Entry<String, ServiceMetaInfo> entry : selected.entrySet()) {
+            ServiceMetaInfo serviceMetaInfo = consistentHashLoadBalancer.select(buildHashKeyParams(entry.getKey()), remaining);
+            Assert.assertNotSame(removed, serviceMetaInfo);
+            if (entry.getValue() != removed) {
+                Assert.assertSame(entry.getValue(), serviceMetaInfo);
+            }
+        }
+    }
+
+    //一致性哈希带负载上限：路由键对应的节点进行中请求过多时顺延到其他节点，不带系数时不受影响
+    @Test
+    public void selectConsistentHashBounded() {
+        List<ServiceMetaInfo> serviceMetaInfoList = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            serviceMetaInfoList.add(buildServiceMetaInfo("bounded-load-" + i, 8080));
+        }
+        LoadBalancer consistentHashLoadBalancer = new ConsistentHashLoadBalancer();
+        Map<String, Object> boundedParams = buildHashKeyParams("hot-key");
+        boundedParams.put(ConsistentHashLoadBalancer.LOAD_FACTOR, 1.25);
+        ServiceMetaInfo home = consistentHashLoadBalancer.select(boundedParams, serviceMetaInfoList);
+        Assert.assertSame(home, consistentHashLoadBalancer.select(buildHashKeyParams("hot-key"), serviceMetaInfoList));
+
+        NodeMetrics nodeMetrics = NodeMetricsRegistry.getMetrics(home);
+        for (int i = 0; i < 10; i++) {
+            nodeMetrics.incrementActive();
+        }
+        try {
+            Assert.assertNotSame(home, consistentHashLoadBalancer.select(boundedParams, serviceMetaInfoList));
+            Assert.assertSame(home, consistentHashLoadBalancer.select(buildHashKeyParams("hot-key"), serviceMetaInfoList));
+        } finally {
+            for (int i = 0; i < 10; i++) {
+                nodeMetrics.decrementActive();
+            }
+        }
+        Assert.assertSame(home, consistentHashLoadBalancer.select(boundedParams, serviceMetaInfoList));
+    }
+
+    //Maglev：同一路由键总是选中同一节点，移除一个节点后其他节点上的键基本保持不变
+    @Test
+    public void selectMaglev() {
+        List<ServiceMetaInfo> serviceMetaInfoList = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            serviceMetaInfoList.add(buildServiceMetaInfo("maglev-" + i, 8080));
+        }
+        LoadBalancer maglevLoadBalancer = new MaglevLoadBalancer();
+        Map<String, ServiceMetaInfo> selected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = "user-" + i;
+            ServiceMetaInfo serviceMetaInfo = maglevLoadBalancer.select(buildHashKeyParams(key), serviceMetaInfoList);
+            Assert.assertSame(serviceMetaInfo, maglevLoadBalancer.select(buildHashKeyParams(key), serviceMetaInfoList));
+            selected.put(key, serviceMetaInfo);
+        }
+        Assert.assertEquals(5, new HashSet<>(selected.values()).size());
+
+        ServiceMetaInfo removed = serviceMetaInfoList.get(2);
+        List<ServiceMetaInfo> remaining = new ArrayList<>(serviceMetaInfoList);
+        remaining.remove(removed);
+        int kept = 0;
+        int total = 0;
+        for (Map.Entry<String, ServiceMetaInfo> entry : selected.entrySet()) {
+            ServiceMetaInfo serviceMetaInfo = maglevLoadBalancer.select(buildHashKeyParams(entry.getKey()), remaining);
+            Assert.assertNotSame(removed, serviceMetaInfo);
+            if (entry.getValue() != removed) {
+                total++;
+                if (entry.getValue() == serviceMetaInfo) {
+                    kept++;
+                }
+            }
+        }
+        Assert.assertTrue("kept " + kept + " of " + total, kept >= total * 0.9);
+    }
+
+    private Map<String, Object> buildHashKeyParams(String key) {
+        Map<String, Object> requestParams = new HashMap<>();
+        requestParams.put(ConsistentHashLoadBalancer.METHOD_NAME, "getUser");
+        requestParams.put(ConsistentHashLoadBalancer.HASH_KEY, key);
+        return requestParams;
+    }
+
+    private ServiceMetaInfo buildServiceMetaInfo(String host, int port) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName("myService");
+        serviceMetaInfo.setServiceVersion("1.0");
+        serviceMetaInfo.setServiceHost(host);
+        serviceMetaInfo.setServicePort(port);
+        return serviceMetaInfo;
+    }
+}
@@ -1,13 +1,20 @@
 package com.yupi.yurpc.protocol;
 
 import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
 import com.yupi.yurpc.constant.RpcConstant;
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.model.RpcBatchRequest;
 import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.server.tcp.TcpBufferHandlerWrapper;
 import io.vertx.core.buffer.Buffer;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 
 //自定义协议消息测试
@@ -24,6 +31,7 @@ public class ProtocolMessageTest {
         header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
         header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
         header.setRequestId(IdUtil.getSnowflakeNextId());
+        header.setTimeout(3000);
         header.setBodyLength(0);
 
         RpcRequest rpcRequest = new RpcRequest();
@@ -38,6 +46,161 @@ public class ProtocolMessageTest {
         Buffer encodeBuffer = ProtocolMessageEncoder.encode(protocolMessage);
         ProtocolMessage<?> message = ProtocolMessageDecoder.decode(encodeBuffer);
         Assert.assertNotNull(message);
+        Assert.assertEquals(header.getRequestId(), message.getHeader().getRequestId());
+        Assert.assertEquals(3000, message.getHeader().getTimeout());
     }
 
-}
\ No newline at end of file
+    //半包、粘包：两条消息拼接后按任意位置拆分，仍能解码出完整的两条消息
+    @Test
+    public void testFrameSplitting() throws IOException {
+        ProtocolMessage<RpcRequest> first = buildMessage("first");
+        ProtocolMessage<RpcRequest> second = buildMessage("second");
+        Buffer stream = Buffer.buffer()
+                .appendBuffer(ProtocolMessageEncoder.encode(first))
+                .appendBuffer(ProtocolMessageEncoder.encode(second));
+
+        List<Long> requestIds = new ArrayList<>();
+        TcpBufferHandlerWrapper wrapper = new TcpBufferHandlerWrapper(buffer -> {
+            try {
+                ProtocolMessage<?> message = ProtocolMessageDecoder.decode(buffer);
+                requestIds.add(message.getHeader().getRequestId());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        //第一段只有半个消息头，第二段跨越两条消息
+        int firstCut = 10;
+        int secondCut = stream.length() - 7;
+        wrapper.handle(stream.getBuffer(0, firstCut));
+        wrapper.handle(stream.getBuffer(firstCut, secondCut));
+        wrapper.handle(stream.getBuffer(secondCut, stream.length()));
+
+        Assert.assertEquals(2, requestIds.size());
+        Assert.assertEquals(first.getHeader().getRequestId(), (long) requestIds.get(0));
+        Assert.assertEquals(second.getHeader().getRequestId(), (long) requestIds.get(1));
+    }
+
+    //心跳消息没有消息体
+    @Test
+    public void testHeartbeat() throws IOException {
+        ProtocolMessage<RpcRequest> heartbeat = buildMessage("ping");
+        heartbeat.getHeader().setType((byte) ProtocolMessageTypeEnum.HEART_BEAT.getKey());
+        heartbeat.setBody(null);
+
+        Buffer encodeBuffer = ProtocolMessageEncoder.encode(heartbeat);
+        Assert.assertEquals(ProtocolConstant.MESSAGE_HEADER_LENGTH, encodeBuffer.length());
+        ProtocolMessage<?> message = ProtocolMessageDecoder.decode(encodeBuffer);
+        Assert.assertEquals(ProtocolMessageTypeEnum.HEART_BEAT.getKey(), message.getHeader().getType());
+        Assert.assertEquals(heartbeat.getHeader().getRequestId(), message.getHeader().getRequestId());
+        Assert.assertNull(message.getBody());
+    }
+
+    //单向请求的消息体与普通请求相同
+    @Test
+    public void testOneWayRequest() throws IOException {
+        ProtocolMessage<RpcRequest> oneWay = buildMessage("audit");
+        oneWay.getHeader().setType((byte) ProtocolMessageTypeEnum.ONE_WAY_REQUEST.getKey());
+
+        ProtocolMessage<?> message = ProtocolMessageDecoder.decode(ProtocolMessageEncoder.encode(oneWay));
+        Assert.assertEquals(ProtocolMessageTypeEnum.ONE_WAY_REQUEST.getKey(), message.getHeader().getType());
+        Assert.assertEquals("audit", ((RpcRequest) message.getBody()).getMethodName());
+    }
+
+    //批量请求按顺序携带多个请求
+    @Test
+    public void testBatchRequest() throws IOException {
+        ProtocolMessage<RpcRequest> first = buildMessage("getUser");
+        ProtocolMessage<RpcRequest> second = buildMessage("getUser");
+        second.getBody().setArgs(new Object[]{"bbb"});
+        ProtocolMessage.Header header = first.getHeader();
+        header.setType((byte) ProtocolMessageTypeEnum.BATCH_REQUEST.getKey());
+        RpcBatchRequest batchRequest = new RpcBatchRequest(Arrays.asList(first.getBody(), second.getBody()));
+
+        ProtocolMessage<?> message = ProtocolMessageDecoder.decode(ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, batchRequest)));
+        Assert.assertEquals(ProtocolMessageTypeEnum.BATCH_REQUEST.getKey(), message.getHeader().getType());
+        List<RpcRequest> requests = ((RpcBatchRequest) message.getBody()).getRequests();
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals("aaa", requests.get(0).getArgs()[0]);
+        Assert.assertEquals("bbb", requests.get(1).getArgs()[0]);
+    }
+
+    //压缩的消息：序列化器字节的高位记录压缩器，消息体长度回填为压缩后的长度
+    @Test
+    public void testCompressedFrame() throws IOException {
+        ProtocolMessage<RpcRequest> protocolMessage = buildMessage("upload");
+        ProtocolMessage.Header header = protocolMessage.getHeader();
+        header.setCompressor((byte) ProtocolMessageCompressorEnum.GZIP.getKey());
+        header.setAcceptCompressor((byte) ProtocolMessageCompressorEnum.DEFLATE.getKey());
+        String payload = StrUtil.repeat("compressible ", 1000);
+        protocolMessage.getBody().setArgs(new Object[]{payload});
+
+        Buffer encodeBuffer = ProtocolMessageEncoder.encode(protocolMessage);
+        int serializerByte = encodeBuffer.getByte(2) & 0xFF;
+        Assert.assertEquals(ProtocolMessageSerializerEnum.JDK.getKey(), serializerByte & ProtocolConstant.SERIALIZER_MASK);
+        Assert.assertEquals(ProtocolMessageCompressorEnum.GZIP.getKey(),
+                serializerByte >> ProtocolConstant.COMPRESSOR_SHIFT & ProtocolConstant.COMPRESSOR_MASK);
+        Assert.assertEquals(ProtocolMessageCompressorEnum.DEFLATE.getKey(),
+                serializerByte >> ProtocolConstant.ACCEPT_COMPRESSOR_SHIFT & ProtocolConstant.COMPRESSOR_MASK);
+        Assert.assertEquals(encodeBuffer.length() - ProtocolConstant.MESSAGE_HEADER_LENGTH, encodeBuffer.getInt(17));
+        Assert.assertTrue(encodeBuffer.length() < payload.length());
+
+        ProtocolMessage<?> message = ProtocolMessageDecoder.decode(encodeBuffer);
+        Assert.assertEquals(ProtocolMessageCompressorEnum.GZIP.getKey(), message.getHeader().getCompressor());
+        Assert.assertEquals(ProtocolMessageCompressorEnum.DEFLATE.getKey(), message.getHeader().getAcceptCompressor());
+        Assert.assertEquals(ProtocolMessageSerializerEnum.JDK.getKey(), message.getHeader().getSerializer());
+        Assert.assertEquals(payload, ((RpcRequest) message.getBody()).getArgs()[0]);
+    }
+
+    //预分配大小：一条大消息之后最多按上限分配一次，之后的小消息立即回到小的预分配大小
+    @Test
+    public void testSizeHintAfterLargeFrame() throws IOException {
+        ProtocolMessage<RpcRequest> largeMessage = buildMessage("upload");
+        largeMessage.getBody().setArgs(new Object[]{StrUtil.repeat("x", 256 * 1024)});
+        Assert.assertTrue(ProtocolMessageEncoder.encode(largeMessage).length() > 256 * 1024);
+
+        Buffer firstSmall = ProtocolMessageEncoder.encode(buildMessage("hello"));
+        Assert.assertTrue(firstSmall.getByteBuf().capacity() <= 64 * 1024);
+        Buffer secondSmall = ProtocolMessageEncoder.encode(buildMessage("hello"));
+        Assert.assertTrue(secondSmall.getByteBuf().capacity() < 1024);
+        Assert.assertEquals("hello", ((RpcRequest) ProtocolMessageDecoder.decode(secondSmall).getBody()).getMethodName());
+    }
+
+    //v1 的 17 字节消息头（没有超时时间）：不足一个 v2 消息头也要立即拒绝，不能一直等待
+    @Test
+    public void testRejectVersion1() {
+        Buffer legacyHeartbeat = Buffer.buffer()
+                .appendByte(ProtocolConstant.PROTOCOL_MAGIC)
+                .appendByte(ProtocolConstant.PROTOCOL_VERSION_1)
+                .appendByte((byte) ProtocolMessageSerializerEnum.JDK.getKey())
+                .appendByte((byte) ProtocolMessageTypeEnum.HEART_BEAT.getKey())
+                .appendByte((byte) ProtocolMessageStatusEnum.OK.getValue())
+                .appendLong(IdUtil.getSnowflakeNextId())
+                .appendInt(0);
+        Assert.assertEquals(17, legacyHeartbeat.length());
+        TcpBufferHandlerWrapper wrapper = new TcpBufferHandlerWrapper(buffer -> Assert.fail());
+        try {
+            wrapper.handle(legacyHeartbeat);
+            Assert.fail();
+        } catch (RpcException e) {
+            Assert.assertTrue(e.getMessage().contains("不支持的协议版本"));
+        }
+    }
+
+    private ProtocolMessage<RpcRequest> buildMessage(String methodName) {
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        header.setSerializer((byte) ProtocolMessageSerializerEnum.JDK.getKey());
+        header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
+        header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
+        header.setRequestId(IdUtil.getSnowflakeNextId());
+
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName("myService");
+        rpcRequest.setMethodName(methodName);
+        rpcRequest.setParameterTypes(new Class[]{String.class});
+        rpcRequest.setArgs(new Object[]{"aaa"});
+        return new ProtocolMessage<>(header, rpcRequest);
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.yupi.yurpc.proxy;
+
+import com.yupi.yurpc.config.RpcReferenceConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+//代理工厂测试：代理按 (服务类, 服务引用配置) 缓存，只创建代理不发起调用
+public class ServiceProxyFactoryTest {
+
+    public interface GreetingService {
+
+        String greet(String name);
+    }
+
+    //相同的配置共享一个代理，不同的配置使用各自的代理
+    @Test
+    public void separateProxiesPerReferenceConfig() {
+        RpcReferenceConfig first = new RpcReferenceConfig();
+        first.setServiceVersion("1.1");
+        RpcReferenceConfig sameAsFirst = new RpcReferenceConfig();
+        sameAsFirst.setServiceVersion("1.1");
+        RpcReferenceConfig second = new RpcReferenceConfig();
+        second.setServiceVersion("1.2");
+
+        GreetingService firstProxy = ServiceProxyFactory.getProxy(GreetingService.class, first);
+        Assert.assertSame(firstProxy, ServiceProxyFactory.getProxy(GreetingService.class, sameAsFirst));
+        Assert.assertNotSame(firstProxy, ServiceProxyFactory.getProxy(GreetingService.class, second));
+    }
+
+    //创建代理之后修改配置（包括集合），不会改变已缓存代理的键，修改后的配置对应新的代理
+    @Test
+    public void mutatedConfigDoesNotAliasCachedProxy() {
+        RpcReferenceConfig referenceConfig = new RpcReferenceConfig();
+        referenceConfig.setServiceVersion("2.1");
+        GreetingService original = ServiceProxyFactory.getProxy(GreetingService.class, referenceConfig);
+
+        referenceConfig.getOneWayMethods().add("greet");
+        GreetingService mutated = ServiceProxyFactory.getProxy(GreetingService.class, referenceConfig);
+        Assert.assertNotSame(original, mutated);
+
+        referenceConfig.setTimeout(100L);
+        Assert.assertNotSame(mutated, ServiceProxyFactory.getProxy(GreetingService.class, referenceConfig));
+
+        RpcReferenceConfig originalConfig = new RpcReferenceConfig();
+        originalConfig.setServiceVersion("2.1");
+        Assert.assertSame(original, ServiceProxyFactory.getProxy(GreetingService.class, originalConfig));
+    }
+}
@@ -0,0 +1,153 @@
+package com.yupi.yurpc.proxy;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.annotation.OneWay;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.config.RpcReferenceConfig;
+import com.yupi.yurpc.constant.RpcConstant;
+import com.yupi.yurpc.registry.LocalRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+//服务代理测试：本地调用（直接调用、复制模式、单向调用）只使用 LocalRegistry，不需要注册中心
+public class ServiceProxyTest {
+
+    private static final long TIMEOUT = 5000;
+
+    public interface EchoService {
+
+        List<String> echo(List<String> values);
+
+        @OneWay
+        void record(List<String> values);
+
+        @OneWay
+        void fail();
+    }
+
+    public static class EchoServiceImpl implements EchoService {
+
+        //单向调用的参数和执行线程
+        private final AtomicReference<List<String>> recorded = new AtomicReference<>();
+
+        private final AtomicReference<String> recordThread = new AtomicReference<>();
+
+        private final CountDownLatch recordLatch = new CountDownLatch(1);
+
+        @Override
+        public List<String> echo(List<String> values) {
+            return values;
+        }
+
+        @Override
+        public void record(List<String> values) {
+            recorded.set(values);
+            recordThread.set(Thread.currentThread().getName());
+            recordLatch.countDown();
+        }
+
+        @Override
+        public void fail() {
+            throw new IllegalStateException("fail");
+        }
+    }
+
+    private EchoServiceImpl serviceImpl;
+
+    private boolean injvm;
+
+    private boolean injvmCopy;
+
+    @Before
+    public void setUp() {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        injvm = rpcConfig.isInjvm();
+        injvmCopy = rpcConfig.isInjvmCopy();
+        rpcConfig.setInjvm(true);
+        serviceImpl = new EchoServiceImpl();
+        LocalRegistry.register(EchoService.class.getName(), serviceImpl);
+    }
+
+    @After
+    public void tearDown() {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        rpcConfig.setInjvm(injvm);
+        rpcConfig.setInjvmCopy(injvmCopy);
+        LocalRegistry.remove(EchoService.class.getName());
+    }
+
+    //本地调用默认关闭，需要显式开启
+    @Test
+    public void injvmDisabledByDefault() {
+        Assert.assertFalse(new RpcConfig().isInjvm());
+    }
+
+    //本地调用直接传递参数和返回值
+    @Test
+    public void injvmCall() {
+        List<String> values = new ArrayList<>(Arrays.asList("a", "b"));
+        Assert.assertSame(values, createProxy(new RpcReferenceConfig()).echo(values));
+    }
+
+    //复制模式：服务方法收到的参数和调用方收到的返回值都是副本
+    @Test
+    public void injvmCopyCall() {
+        RpcApplication.getRpcConfig().setInjvmCopy(true);
+        List<String> values = new ArrayList<>(Arrays.asList("a", "b"));
+        List<String> result = createProxy(new RpcReferenceConfig()).echo(values);
+        Assert.assertNotSame(values, result);
+        Assert.assertEquals(values, result);
+    }
+
+    //单向调用在线程池中执行，复制模式下调用返回后修改参数不影响服务方法
+    @Test
+    public void injvmOneWayCall() throws Exception {
+        RpcApplication.getRpcConfig().setInjvmCopy(true);
+        List<String> values = new ArrayList<>(Arrays.asList("a", "b"));
+        createProxy(new RpcReferenceConfig()).record(values);
+        values.add("c");
+
+        Assert.assertTrue(serviceImpl.recordLatch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(Arrays.asList("a", "b"), serviceImpl.recorded.get());
+        Assert.assertTrue(serviceImpl.recordThread.get().startsWith("rpc-stream-"));
+    }
+
+    //单向调用的异常只记录日志，不抛给调用方
+    @Test
+    public void injvmOneWayFailureNotThrown() {
+        createProxy(new RpcReferenceConfig()).fail();
+    }
+
+    //本地注册的版本与引用的版本不一致时不能短路到本地实现
+    @Test
+    public void injvmVersionMismatch() {
+        Assert.assertNotNull(LocalRegistry.getInvoker(EchoService.class.getName(), RpcConstant.DEFAULT_SERVICE_VERSION));
+        Assert.assertNull(LocalRegistry.getInvoker(EchoService.class.getName(), "2.0"));
+
+        LocalRegistry.register(EchoService.class.getName(), "2.0", serviceImpl);
+        Assert.assertNull(LocalRegistry.getInvoker(EchoService.class.getName(), RpcConstant.DEFAULT_SERVICE_VERSION));
+        RpcReferenceConfig referenceConfig = new RpcReferenceConfig();
+        referenceConfig.setServiceVersion("2.0");
+        List<String> values = new ArrayList<>();
+        Assert.assertSame(values, createProxy(referenceConfig).echo(values));
+    }
+
+    //不经过代理缓存，每个测试使用当前的全局配置创建方法描述
+    private static EchoService createProxy(RpcReferenceConfig referenceConfig) {
+        return (EchoService) Proxy.newProxyInstance(
+                EchoService.class.getClassLoader(),
+                new Class[]{EchoService.class},
+                new ServiceProxy(referenceConfig));
+    }
+}
@@ -0,0 +1,341 @@
+package com.yupi.yurpc.server.tcp;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.compressor.CompressorKeys;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
+import com.yupi.yurpc.model.RpcBatchRequest;
+import com.yupi.yurpc.model.RpcBatchResponse;
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.RpcResponse;
+import com.yupi.yurpc.protocol.*;
+import com.yupi.yurpc.registry.LocalRegistry;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetSocket;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.yupi.yurpc.server.tcp.TcpTestSupport.TIMEOUT;
+import static com.yupi.yurpc.server.tcp.TcpTestSupport.awaitTrue;
+
+
+//方法 id（协议 v3）测试（本机回环）：握手协商、消费端的定义与复用、服务端的还原
+public class TcpMethodIdTest {
+
+    private static final String SERVICE_NAME = EchoService.class.getName();
+
+    private static int port;
+
+    public static class EchoService {
+
+        public String echo(String value) {
+            return "echo " + value;
+        }
+    }
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        port = TcpTestSupport.startServer();
+        LocalRegistry.register(SERVICE_NAME, new EchoService());
+    }
+
+    //v3 服务端：返回自己的版本，确认支持消费端声明的压缩器，之后的请求和响应都可以压缩
+    @Test
+    public void handshakeWithCurrentServer() throws Exception {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        String compressor = rpcConfig.getCompressor();
+        rpcConfig.setCompressor(CompressorKeys.GZIP);
+        try {
+            TcpConnection connection = TcpTestSupport.connect(port);
+            awaitTrue(() -> connection.getProtocolVersion() == ProtocolConstant.PROTOCOL_VERSION);
+            Assert.assertEquals(ProtocolMessageCompressorEnum.GZIP.getKey(), connection.getCompressor());
+
+            String payload = StrUtil.repeat("compressible ", 1000);
+            ProtocolMessage<RpcRequest> protocolMessage = buildMessage(buildEchoRequest(payload));
+            protocolMessage.getHeader().setAcceptCompressor((byte) ProtocolMessageCompressorEnum.GZIP.getKey());
+            RpcResponse rpcResponse = connection.send(protocolMessage, TIMEOUT).get(TIMEOUT, TimeUnit.MILLISECONDS);
+            Assert.assertEquals("echo " + payload, rpcResponse.getData());
+            connection.close();
+        } finally {
+            rpcConfig.setCompressor(compressor);
+        }
+    }
+
+    //v2 服务端原样返回握手心跳：保持 v2，不使用方法 id，也不压缩请求
+    @Test
+    public void handshakeWithV2Server() throws Exception {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        String compressor = rpcConfig.getCompressor();
+        rpcConfig.setCompressor(CompressorKeys.GZIP);
+        try (FakeServer fakeServer = FakeServer.start(ProtocolConstant.PROTOCOL_VERSION_2)) {
+            TcpConnection connection = TcpTestSupport.connect(fakeServer.port);
+            // 收到握手心跳的响应后才会记录 RTT
+            awaitTrue(() -> NodeMetricsRegistry.getMetrics("localhost:" + fakeServer.port).getRttNanos() > 0);
+            Assert.assertEquals(ProtocolConstant.PROTOCOL_VERSION_2, connection.getProtocolVersion());
+            Assert.assertEquals(0, connection.getCompressor());
+
+            String payload = StrUtil.repeat("compressible ", 1000);
+            connection.send(buildMessage(buildEchoRequest(payload)), TIMEOUT).get(TIMEOUT, TimeUnit.MILLISECONDS);
+            ProtocolMessage<RpcRequest> received = fakeServer.receive();
+            Assert.assertEquals(0, received.getHeader().getCompressor());
+            Assert.assertNull(received.getBody().getMethodId());
+            Assert.assertEquals("echo", received.getBody().getMethodName());
+            Assert.assertEquals(payload, received.getBody().getArgs()[0]);
+            connection.close();
+        } finally {
+            rpcConfig.setCompressor(compressor);
+        }
+    }
+
+    //消费端：方法第一次调用携带完整签名定义方法 id，之后只携带方法 id 和参数
+    @Test
+    public void definingFrameThenIdOnlyFrame() throws Exception {
+        try (FakeServer fakeServer = FakeServer.start(ProtocolConstant.PROTOCOL_VERSION)) {
+            TcpConnection connection = TcpTestSupport.connect(fakeServer.port);
+            awaitTrue(() -> connection.getProtocolVersion() == ProtocolConstant.PROTOCOL_VERSION);
+            connection.send(buildMessage(buildEchoRequest("a")), TIMEOUT).get(TIMEOUT, TimeUnit.MILLISECONDS);
+            connection.send(buildMessage(buildEchoRequest("b")), TIMEOUT).get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+            RpcRequest defining = fakeServer.receive().getBody();
+            Assert.assertEquals(SERVICE_NAME, defining.getServiceName());
+            Assert.assertEquals("echo", defining.getMethodName());
+            Assert.assertArrayEquals(new Class[]{String.class}, defining.getParameterTypes());
+            Assert.assertNotNull(defining.getMethodId());
+
+            RpcRequest idOnly = fakeServer.receive().getBody();
+            Assert.assertEquals(defining.getMethodId(), idOnly.getMethodId());
+            Assert.assertNull(idOnly.getServiceName());
+            Assert.assertNull(idOnly.getServiceVersion());
+            Assert.assertNull(idOnly.getMethodName());
+            Assert.assertNull(idOnly.getParameterTypes());
+            Assert.assertEquals("b", idOnly.getArgs()[0]);
+            connection.close();
+        }
+    }
+
+    //服务端：根据连接上定义的方法 id 还原服务名、方法名和参数类型
+    @Test
+    public void idOnlyRequestRestoresSignature() throws Exception {
+        try (RawConnection connection = RawConnection.connect(port)) {
+            Assert.assertEquals("echo a", connection.call(defining(7, "a")).getData());
+            Assert.assertEquals("echo b", connection.call(idOnly(7, "b")).getData());
+        }
+    }
+
+    //服务端：未定义的方法 id 返回异常响应，不执行任何方法
+    @Test
+    public void undefinedMethodId() throws Exception {
+        try (RawConnection connection = RawConnection.connect(port)) {
+            RpcResponse rpcResponse = connection.call(idOnly(99, "a"));
+            Assert.assertNull(rpcResponse.getData());
+            Assert.assertNotNull(rpcResponse.getException());
+            Assert.assertTrue(rpcResponse.getException().getMessage().contains("未定义的方法 id: 99"));
+        }
+    }
+
+    //服务端：同一批次中先定义、后复用的方法 id 按顺序还原，未定义的只影响对应的请求
+    @Test
+    public void batchDefinesThenReuses() throws Exception {
+        try (RawConnection connection = RawConnection.connect(port)) {
+            RpcBatchRequest rpcBatchRequest = new RpcBatchRequest(Arrays.asList(defining(3, "x"), idOnly(3, "y"), idOnly(4, "z")));
+            ProtocolMessage<?> message = connection.call(ProtocolMessageTypeEnum.BATCH_REQUEST, rpcBatchRequest);
+            Assert.assertEquals(ProtocolMessageTypeEnum.BATCH_RESPONSE.getKey(), message.getHeader().getType());
+            List<RpcResponse> responses = ((RpcBatchResponse) message.getBody()).getResponses();
+            Assert.assertEquals(3, responses.size());
+            Assert.assertEquals("echo x", responses.get(0).getData());
+            Assert.assertEquals("echo y", responses.get(1).getData());
+            Assert.assertTrue(responses.get(2).getException().getMessage().contains("未定义的方法 id: 4"));
+        }
+    }
+
+    //服务端：空的批量请求直接拒绝，返回异常响应
+    @Test
+    public void emptyBatchRejected() throws Exception {
+        try (RawConnection connection = RawConnection.connect(port)) {
+            ProtocolMessage<?> message = connection.call(ProtocolMessageTypeEnum.BATCH_REQUEST, new RpcBatchRequest(Collections.emptyList()));
+            Assert.assertEquals(ProtocolMessageTypeEnum.RESPONSE.getKey(), message.getHeader().getType());
+            RpcResponse rpcResponse = (RpcResponse) message.getBody();
+            Assert.assertTrue(rpcResponse.getException().getMessage().contains("批量请求为空"));
+        }
+    }
+
+    //服务端：批次中第一个请求的方法 id 未定义时，按后面能还原的请求分发，批次仍然收到完整的响应
+    @Test
+    public void batchWithUndefinedFirstEntry() throws Exception {
+        try (RawConnection connection = RawConnection.connect(port)) {
+            RpcBatchRequest rpcBatchRequest = new RpcBatchRequest(Arrays.asList(idOnly(40, "x"), defining(41, "y")));
+            ProtocolMessage<?> message = connection.call(ProtocolMessageTypeEnum.BATCH_REQUEST, rpcBatchRequest);
+            Assert.assertEquals(ProtocolMessageTypeEnum.BATCH_RESPONSE.getKey(), message.getHeader().getType());
+            List<RpcResponse> responses = ((RpcBatchResponse) message.getBody()).getResponses();
+            Assert.assertEquals(2, responses.size());
+            Assert.assertTrue(responses.get(0).getException().getMessage().contains("未定义的方法 id: 40"));
+            Assert.assertEquals("echo y", responses.get(1).getData());
+
+            // 所有请求都无法还原时不分发，直接返回各个请求的错误
+            message = connection.call(ProtocolMessageTypeEnum.BATCH_REQUEST, new RpcBatchRequest(Arrays.asList(idOnly(42, "x"), idOnly(43, "y"))));
+            responses = ((RpcBatchResponse) message.getBody()).getResponses();
+            Assert.assertEquals(2, responses.size());
+            Assert.assertTrue(responses.get(0).getException().getMessage().contains("未定义的方法 id: 42"));
+            Assert.assertTrue(responses.get(1).getException().getMessage().contains("未定义的方法 id: 43"));
+        }
+    }
+
+    private static RpcRequest buildEchoRequest(String value) {
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName(SERVICE_NAME);
+        rpcRequest.setMethodName("echo");
+        rpcRequest.setParameterTypes(new Class[]{String.class});
+        rpcRequest.setArgs(new Object[]{value});
+        return rpcRequest;
+    }
+
+    //携带完整签名，定义方法 id
+    private static RpcRequest defining(int methodId, String value) {
+        RpcRequest rpcRequest = buildEchoRequest(value);
+        rpcRequest.setMethodId(methodId);
+        return rpcRequest;
+    }
+
+    //只携带方法 id 和参数
+    private static RpcRequest idOnly(int methodId, String value) {
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceVersion(null);
+        rpcRequest.setMethodId(methodId);
+        rpcRequest.setArgs(new Object[]{value});
+        return rpcRequest;
+    }
+
+    private static <T> ProtocolMessage<T> buildMessage(ProtocolMessageTypeEnum type, T body) {
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        header.setSerializer((byte) ProtocolMessageSerializerEnum.JDK.getKey());
+        header.setType((byte) type.getKey());
+        header.setRequestId(IdUtil.getSnowflakeNextId());
+        header.setTimeout((int) TIMEOUT);
+        return new ProtocolMessage<>(header, body);
+    }
+
+    private static ProtocolMessage<RpcRequest> buildMessage(RpcRequest rpcRequest) {
+        return buildMessage(ProtocolMessageTypeEnum.REQUEST, rpcRequest);
+    }
+
+    //直接收发协议消息的连接，不做握手和方法 id 替换
+    private static class RawConnection implements AutoCloseable {
+
+        private final BlockingQueue<ProtocolMessage<?>> received = new LinkedBlockingQueue<>();
+
+        private NetSocket socket;
+
+        static RawConnection connect(int port) throws Exception {
+            RawConnection connection = new RawConnection();
+            connection.socket = RpcApplication.getRpcRuntime().getNetClient().connect(port, "localhost")
+                    .toCompletionStage().toCompletableFuture().get(TIMEOUT, TimeUnit.MILLISECONDS);
+            connection.socket.handler(new TcpBufferHandlerWrapper(buffer -> connection.received.offer(decode(buffer))));
+            return connection;
+        }
+
+        RpcResponse call(RpcRequest rpcRequest) throws Exception {
+            ProtocolMessage<?> message = call(ProtocolMessageTypeEnum.REQUEST, rpcRequest);
+            Assert.assertEquals(ProtocolMessageTypeEnum.RESPONSE.getKey(), message.getHeader().getType());
+            return (RpcResponse) message.getBody();
+        }
+
+        ProtocolMessage<?> call(ProtocolMessageTypeEnum type, Object body) throws Exception {
+            ProtocolMessage<?> protocolMessage = buildMessage(type, body);
+            socket.write(ProtocolMessageEncoder.encode(protocolMessage));
+            ProtocolMessage<?> message = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(message);
+            Assert.assertEquals(protocolMessage.getHeader().getRequestId(), message.getHeader().getRequestId());
+            return message;
+        }
+
+        @Override
+        public void close() {
+            socket.close();
+        }
+    }
+
+    //模拟的服务端：按指定的协议版本响应握手心跳（v2 原样返回心跳的消息头），记录收到的请求并返回成功响应
+    private static class FakeServer implements AutoCloseable {
+
+        private final BlockingQueue<ProtocolMessage<RpcRequest>> requests = new LinkedBlockingQueue<>();
+
+        private final byte version;
+
+        private NetServer netServer;
+
+        private int port;
+
+        private FakeServer(byte version) {
+            this.version = version;
+        }
+
+        static FakeServer start(byte version) throws Exception {
+            FakeServer fakeServer = new FakeServer(version);
+            fakeServer.netServer = RpcApplication.getRpcRuntime().getVertx().createNetServer()
+                    .connectHandler(socket -> socket.handler(new TcpBufferHandlerWrapper(buffer -> fakeServer.handle(socket, buffer))));
+            fakeServer.port = fakeServer.netServer.listen(0)
+                    .toCompletionStage().toCompletableFuture().get(TIMEOUT, TimeUnit.MILLISECONDS).actualPort();
+            return fakeServer;
+        }
+
+        ProtocolMessage<RpcRequest> receive() throws InterruptedException {
+            ProtocolMessage<RpcRequest> message = requests.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(message);
+            return message;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void handle(NetSocket socket, Buffer buffer) {
+            ProtocolMessage<?> message = decode(buffer);
+            ProtocolMessage.Header header = message.getHeader();
+            if (header.getType() == ProtocolMessageTypeEnum.HEART_BEAT.getKey()) {
+                header.setVersion(version);
+                socket.write(encode(new ProtocolMessage<>(header, null)));
+                return;
+            }
+            requests.offer((ProtocolMessage<RpcRequest>) message);
+            RpcResponse rpcResponse = new RpcResponse();
+            rpcResponse.setData("ok");
+            rpcResponse.setDataType(String.class);
+            rpcResponse.setMessage("ok");
+            header.setType((byte) ProtocolMessageTypeEnum.RESPONSE.getKey());
+            header.setCompressor((byte) 0);
+            socket.write(encode(new ProtocolMessage<>(header, rpcResponse)));
+        }
+
+        @Override
+        public void close() {
+            netServer.close();
+        }
+    }
+
+    private static ProtocolMessage<?> decode(Buffer buffer) {
+        try {
+            return ProtocolMessageDecoder.decode(buffer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Buffer encode(ProtocolMessage<?> protocolMessage) {
+        try {
+            return ProtocolMessageEncoder.encode(protocolMessage);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.metrics.NodeMetrics;
+import com.yupi.yurpc.metrics.NodeMetricsRegistry;
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.RpcResponse;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import com.yupi.yurpc.registry.LocalRegistry;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.yupi.yurpc.server.tcp.TcpTestSupport.TIMEOUT;
+
+
+//节点下线测试（本机回环）：同一地址上的其他服务不受影响，整个节点下线时进行中的请求正常完成
+public class TcpNodeEvictionTest {
+
+    private static int port;
+
+    public static class FirstService {
+
+        public String hello(String value) {
+            return "first " + value;
+        }
+    }
+
+    public static class SecondService {
+
+        public String hello(String value) {
+            return "second " + value;
+        }
+
+        //服务端使用 direct 分发器，睡眠期间请求一直处于进行中
+        public String slowHello(String value) throws InterruptedException {
+            Thread.sleep(300);
+            return "second " + value;
+        }
+    }
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        port = TcpTestSupport.startServer();
+        LocalRegistry.register(FirstService.class.getName(), new FirstService());
+        LocalRegistry.register(SecondService.class.getName(), new SecondService());
+    }
+
+    //下线同一地址上的一个服务，另一个服务的连接和指标都保留
+    @Test
+    public void removeOneServiceKeepsOthers() throws Exception {
+        ServiceMetaInfo first = buildServiceMetaInfo(FirstService.class.getName());
+        ServiceMetaInfo second = buildServiceMetaInfo(SecondService.class.getName());
+        NodeMetricsRegistry.addServiceNode(first.getServiceNodeKey());
+        NodeMetricsRegistry.addServiceNode(second.getServiceNodeKey());
+        Assert.assertEquals("first a", call(first, "hello", "a"));
+        Assert.assertEquals("second a", call(second, "hello", "a"));
+        NodeMetrics nodeMetrics = NodeMetricsRegistry.getMetrics(second);
+
+        NodeMetricsRegistry.removeServiceNode(first.getServiceNodeKey());
+        Assert.assertSame(nodeMetrics, NodeMetricsRegistry.getMetrics(second));
+        Assert.assertEquals("second b", call(second, "hello", "b"));
+
+        NodeMetricsRegistry.removeServiceNode(second.getServiceNodeKey());
+        Assert.assertNotSame(nodeMetrics, NodeMetricsRegistry.getMetrics(second));
+    }
+
+    //节点下线时连接池排空而不是直接关闭，已经发出的请求正常收到响应，之后的请求使用新的连接
+    @Test
+    public void removeNodeDrainsInFlightRequests() throws Exception {
+        ServiceMetaInfo second = buildServiceMetaInfo(SecondService.class.getName());
+        NodeMetricsRegistry.addServiceNode(second.getServiceNodeKey());
+        Assert.assertEquals("second a", call(second, "hello", "a"));
+
+        CompletableFuture<RpcResponse> inFlight = VertxTcpClient.doRequestAsync(buildRequest(second, "slowHello", "b"), second, TIMEOUT);
+        NodeMetricsRegistry.removeServiceNode(second.getServiceNodeKey());
+        Assert.assertEquals("second b", inFlight.get(TIMEOUT, TimeUnit.MILLISECONDS).getData());
+        Assert.assertEquals("second c", call(second, "hello", "c"));
+    }
+
+    private static String call(ServiceMetaInfo serviceMetaInfo, String methodName, String value) throws Exception {
+        RpcResponse rpcResponse = VertxTcpClient.doRequestAsync(buildRequest(serviceMetaInfo, methodName, value), serviceMetaInfo, TIMEOUT)
+                .get(TIMEOUT, TimeUnit.MILLISECONDS);
+        return (String) rpcResponse.getData();
+    }
+
+    private static RpcRequest buildRequest(ServiceMetaInfo serviceMetaInfo, String methodName, String value) {
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName(serviceMetaInfo.getServiceName());
+        rpcRequest.setMethodName(methodName);
+        rpcRequest.setParameterTypes(new Class[]{String.class});
+        rpcRequest.setArgs(new Object[]{value});
+        return rpcRequest;
+    }
+
+    private static ServiceMetaInfo buildServiceMetaInfo(String serviceName) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName(serviceName);
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        return serviceMetaInfo;
+    }
+}
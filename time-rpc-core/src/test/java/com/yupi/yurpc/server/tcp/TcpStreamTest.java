@@ -0,0 +1,384 @@
+package com.yupi.yurpc.server.tcp;
+
+import cn.hutool.core.util.IdUtil;
+import com.yupi.yurpc.exception.RpcException;
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.protocol.*;
+import com.yupi.yurpc.registry.LocalRegistry;
+import com.yupi.yurpc.stream.StreamObserver;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.yupi.yurpc.server.tcp.TcpTestSupport.TIMEOUT;
+import static com.yupi.yurpc.server.tcp.TcpTestSupport.awaitTrue;
+
+
+//流式调用测试（本机回环）
+public class TcpStreamTest {
+
+    //流的窗口
+    private static final int WINDOW = TcpTestSupport.STREAM_WINDOW;
+
+    private static final String SERVICE_NAME = StreamService.class.getName();
+
+    private static int port;
+
+    //服务端已经产生的元素个数
+    private static final AtomicInteger produced = new AtomicInteger();
+
+    //服务端迭代器已关闭
+    private static volatile CountDownLatch iteratorClosed = new CountDownLatch(1);
+
+    //双向流服务端的接收观察者收到连接断开
+    private static volatile CountDownLatch serverInboundError = new CountDownLatch(1);
+
+    //阻塞双向流服务端的接收观察者
+    private static volatile CountDownLatch sinkGate = new CountDownLatch(1);
+
+    //双向流服务端收到的元素个数
+    private static final AtomicInteger sinkReceived = new AtomicInteger();
+
+    public static class StreamService {
+
+        //产生 0 ~ count-1
+        public Iterator<Integer> range(int count) {
+            return new Iterator<Integer>() {
+                int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                public Integer next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    produced.incrementAndGet();
+                    return next++;
+                }
+            };
+        }
+
+        //产生 count 个元素后失败
+        public Iterator<Integer> failAfter(int count) {
+            Iterator<Integer> range = range(count);
+            return new Iterator<Integer>() {
+                @Override
+                public boolean hasNext() {
+                    if (!range.hasNext()) {
+                        throw new IllegalStateException("stream broken");
+                    }
+                    return true;
+                }
+
+                @Override
+                public Integer next() {
+                    return range.next();
+                }
+            };
+        }
+
+        //无限产生元素，关闭时通知
+        public Iterator<Integer> endless() {
+            return new EndlessIterator();
+        }
+
+        //原样返回收到的元素
+        public StreamObserver<Object> echo(StreamObserver<Object> responses) {
+            return new StreamObserver<Object>() {
+                @Override
+                public void onNext(Object value) {
+                    responses.onNext(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    serverInboundError.countDown();
+                }
+
+                @Override
+                public void onCompleted() {
+                    responses.onCompleted();
+                }
+            };
+        }
+
+        //处理每个元素前等待 sinkGate
+        public StreamObserver<Object> sink(StreamObserver<Object> responses) {
+            return new StreamObserver<Object>() {
+                @Override
+                public void onNext(Object value) {
+                    try {
+                        sinkGate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    sinkReceived.incrementAndGet();
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    responses.onCompleted();
+                }
+            };
+        }
+
+        //收到第一个元素时异常结束
+        public StreamObserver<Object> reject(StreamObserver<Object> responses) {
+            return new StreamObserver<Object>() {
+                @Override
+                public void onNext(Object value) {
+                    responses.onError(new IllegalArgumentException("rejected " + value));
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                }
+            };
+        }
+    }
+
+    private static class EndlessIterator implements Iterator<Integer>, AutoCloseable {
+
+        int next = 0;
+
+        @Override
+        public boolean hasNext() {
+            return true;
+        }
+
+        @Override
+        public Integer next() {
+            return next++;
+        }
+
+        @Override
+        public void close() {
+            iteratorClosed.countDown();
+        }
+    }
+
+    //记录收到的元素和结束通知
+    private static class CollectingObserver implements StreamObserver<Object> {
+
+        final List<Object> items = new CopyOnWriteArrayList<>();
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        volatile Throwable error;
+
+        @Override
+        public void onNext(Object value) {
+            items.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            done.countDown();
+        }
+    }
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        port = TcpTestSupport.startServer();
+        LocalRegistry.register(SERVICE_NAME, new StreamService());
+    }
+
+    //服务端最多领先一个窗口，消费后补充额度，读完后流结束并从连接上移除
+    @Test
+    public void serverStreamFlowControl() throws Exception {
+        TcpConnection connection = TcpTestSupport.connect(port);
+        produced.set(0);
+        TcpClientStream stream = connection.openStream(buildRequest("range", new Class[]{int.class}, new Object[]{100}), TIMEOUT);
+        awaitTrue(() -> produced.get() >= WINDOW);
+        Thread.sleep(200);
+        Assert.assertEquals(WINDOW, produced.get());
+
+        List<Object> items = new ArrayList<>();
+        while (stream.hasNext()) {
+            items.add(stream.next());
+        }
+        Assert.assertEquals(100, items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Assert.assertEquals(i, items.get(i));
+        }
+        Assert.assertEquals(0, connection.getStreamCount());
+        connection.close();
+    }
+
+    @Test
+    public void serverStreamError() throws Exception {
+        TcpConnection connection = TcpTestSupport.connect(port);
+        TcpClientStream stream = connection.openStream(buildRequest("failAfter", new Class[]{int.class}, new Object[]{3}), TIMEOUT);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(stream.hasNext());
+            Assert.assertEquals(i, stream.next());
+        }
+        try {
+            stream.hasNext();
+            Assert.fail();
+        } catch (RpcException e) {
+            Assert.assertTrue(e.getMessage().contains("stream broken"));
+        }
+        Assert.assertEquals(0, connection.getStreamCount());
+        connection.close();
+    }
+
+    //连接断开：消费端读取失败，服务端关闭迭代器
+    @Test
+    public void serverStreamConnectionClosed() throws Exception {
+        TcpConnection connection = TcpTestSupport.connect(port);
+        iteratorClosed = new CountDownLatch(1);
+        TcpClientStream stream = connection.openStream(buildRequest("endless", new Class[0], new Object[0]), TIMEOUT);
+        Assert.assertEquals(0, stream.next());
+        connection.close();
+        try {
+            // 已经收到的元素仍然可以读出
+            while (stream.hasNext()) {
+                stream.next();
+            }
+            Assert.fail();
+        } catch (RpcException e) {
+            Assert.assertTrue(e.getMessage().contains("连接已关闭"));
+        }
+        Assert.assertTrue(iteratorClosed.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(0, connection.getStreamCount());
+    }
+
+    //两个方向都超过一个窗口，需要双方补充额度
+    @Test
+    public void bidiStreamEcho() throws Exception {
+        TcpConnection connection = TcpTestSupport.connect(port);
+        CollectingObserver responses = new CollectingObserver();
+        StreamObserver<Object> requests = connection.openBidiStream(
+                buildRequest("echo", new Class[]{StreamObserver.class}, null), TIMEOUT, responses);
+        for (int i = 0; i < 50; i++) {
+            requests.onNext(i);
+        }
+        requests.onCompleted();
+        Assert.assertTrue(responses.done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Assert.assertNull(responses.error);
+        Assert.assertEquals(50, responses.items.size());
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals(i, responses.items.get(i));
+        }
+        Assert.assertEquals(0, connection.getStreamCount());
+        connection.close();
+    }
+
+    //对端不处理时最多发送一个窗口，之后等待额度超时；对端处理后补充额度继续发送
+    @Test
+    public void bidiStreamWindow() throws Exception {
+        TcpConnection connection = TcpTestSupport.connect(port);
+        sinkGate = new CountDownLatch(1);
+        sinkReceived.set(0);
+        CollectingObserver responses = new CollectingObserver();
+        StreamObserver<Object> requests = connection.openBidiStream(
+                buildRequest("sink", new Class[]{StreamObserver.class}, null), 500, responses);
+        for (int i = 0; i < WINDOW; i++) {
+            requests.onNext(i);
+        }
+        try {
+            requests.onNext(WINDOW);
+            Assert.fail();
+        } catch (RpcException e) {
+            Assert.assertTrue(e.getMessage().contains("额度超时"));
+        }
+        Assert.assertEquals(0, sinkReceived.get());
+
+        sinkGate.countDown();
+        for (int i = 0; i < WINDOW; i++) {
+            requests.onNext(i);
+        }
+        requests.onCompleted();
+        Assert.assertTrue(responses.done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2 * WINDOW, sinkReceived.get());
+        connection.close();
+    }
+
+    //服务端异常结束：消费端收到异常，不能再发送，流从连接上移除
+    @Test
+    public void bidiStreamError() throws Exception {
+        TcpConnection connection = TcpTestSupport.connect(port);
+        CollectingObserver responses = new CollectingObserver();
+        StreamObserver<Object> requests = connection.openBidiStream(
+                buildRequest("reject", new Class[]{StreamObserver.class}, null), TIMEOUT, responses);
+        requests.onNext("first");
+        Assert.assertTrue(responses.done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Assert.assertNotNull(responses.error);
+        Assert.assertTrue(responses.error.getMessage().contains("rejected first"));
+        try {
+            requests.onNext("second");
+            Assert.fail();
+        } catch (RpcException e) {
+            Assert.assertTrue(e.getMessage().contains("流已结束"));
+        }
+        Assert.assertEquals(0, connection.getStreamCount());
+        connection.close();
+    }
+
+    //连接断开：两端的接收观察者都收到异常
+    @Test
+    public void bidiStreamConnectionClosed() throws Exception {
+        TcpConnection connection = TcpTestSupport.connect(port);
+        serverInboundError = new CountDownLatch(1);
+        CollectingObserver responses = new CollectingObserver();
+        StreamObserver<Object> requests = connection.openBidiStream(
+                buildRequest("echo", new Class[]{StreamObserver.class}, null), TIMEOUT, responses);
+        requests.onNext("ping");
+        awaitTrue(() -> responses.items.size() == 1);
+        connection.close();
+        Assert.assertTrue(responses.done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(responses.error.getMessage().contains("连接已关闭"));
+        Assert.assertTrue(serverInboundError.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        try {
+            requests.onNext("after close");
+            Assert.fail();
+        } catch (RpcException e) {
+            Assert.assertTrue(e.getMessage().contains("流已结束"));
+        }
+        Assert.assertEquals(0, connection.getStreamCount());
+    }
+
+    private static ProtocolMessage<RpcRequest> buildRequest(String methodName, Class<?>[] parameterTypes, Object[] args) {
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        header.setSerializer((byte) ProtocolMessageSerializerEnum.JDK.getKey());
+        header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
+        header.setRequestId(IdUtil.getSnowflakeNextId());
+        header.setTimeout((int) TIMEOUT);
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName(SERVICE_NAME);
+        rpcRequest.setMethodName(methodName);
+        rpcRequest.setParameterTypes(parameterTypes);
+        rpcRequest.setArgs(args);
+        return new ProtocolMessage<>(header, rpcRequest);
+    }
+}
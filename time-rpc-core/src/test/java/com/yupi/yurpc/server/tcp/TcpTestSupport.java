@@ -0,0 +1,92 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.server.dispatcher.DispatcherKeys;
+import org.junit.Assert;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+
+//本机回环测试的公共部分：启动 TCP 服务器（整个测试进程只启动一次）、建立独立的连接
+final class TcpTestSupport {
+
+    static final long TIMEOUT = 5000;
+
+    //流的窗口
+    static final int STREAM_WINDOW = 4;
+
+    private static int serverPort;
+
+    private TcpTestSupport() {
+    }
+
+    //启动服务器，服务端使用 direct 分发器，服务方法和回调都不能卡住事件循环
+    static synchronized int startServer() throws Exception {
+        if (serverPort != 0) {
+            return serverPort;
+        }
+        RpcConfig rpcConfig = new RpcConfig();
+        rpcConfig.setStreamWindow(STREAM_WINDOW);
+        rpcConfig.setDispatcher(DispatcherKeys.DIRECT);
+        rpcConfig.setServerInstances(1);
+        RpcApplication.init(rpcConfig);
+        int port = freePort();
+        new VertxTcpServer().doStart(port);
+        awaitListening(port);
+        serverPort = port;
+        return serverPort;
+    }
+
+    //获取一个空闲端口
+    static int freePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    //等待端口开始监听
+    static void awaitListening(int port) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (true) {
+            try (Socket ignored = new Socket("localhost", port)) {
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    //建立一个独立的连接（在事件循环线程上创建）
+    static TcpConnection connect(int port) throws Exception {
+        CompletableFuture<TcpConnection> future = new CompletableFuture<>();
+        String address = "localhost:" + port;
+        RpcApplication.getRpcRuntime().getNetClient().connect(port, "localhost", result -> {
+            if (result.succeeded()) {
+                future.complete(new TcpConnection(result.result(), address));
+            } else {
+                future.completeExceptionally(result.cause());
+            }
+        });
+        return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    //等待条件成立，超时时测试失败
+    static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("条件未在 " + TIMEOUT + " ms 内成立");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -1,9 +1,6 @@
 package com.yupi.yurpc.springboot.starter.annotation;
 
 import com.yupi.yurpc.constant.RpcConstant;
-import com.yupi.yurpc.fault.retry.RetryStrategyKeys;
-import com.yupi.yurpc.fault.tolerant.TolerantStrategyKeys;
-import com.yupi.yurpc.loadbalancer.LoadBalancerKeys;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -22,16 +19,31 @@ public @interface RpcReference {
     //版本
     String serviceVersion() default RpcConstant.DEFAULT_SERVICE_VERSION;
 
-    //负载均衡器
-    String loadBalancer() default LoadBalancerKeys.ROUND_ROBIN;
+    //负载均衡器（为空时使用全局配置，可选值见 LoadBalancerKeys）
+    String loadBalancer() default "";
 
-    //重试策略
-    String retryStrategy() default RetryStrategyKeys.NO;
+    //重试策略（为空时使用全局配置，可选值见 RetryStrategyKeys）
+    String retryStrategy() default "";
 
-    //容错策略
-    String tolerantStrategy() default TolerantStrategyKeys.FAIL_FAST;
+    //容错策略（为空时使用全局配置，可选值见 TolerantStrategyKeys）
+    String tolerantStrategy() default "";
 
     //模拟调用
     boolean mock() default false;
 
+    //服务级别的请求超时时间（单位毫秒，0 表示使用全局配置）
+    long timeout() default 0;
+
+    //方法级别的请求超时时间，格式为 方法名=超时毫秒数，例如 {"getUser=500"}
+    String[] methodTimeouts() default {};
+
+    //单向调用的方法名（服务端不发送响应，方法返回值必须是 void），也可以在接口方法上标注 @OneWay
+    String[] oneWayMethods() default {};
+
+    //合并调用的方法名，同一时间窗口内对同一服务节点的并发调用合并为一个批量请求（适合大量的小请求）
+    String[] batchMethods() default {};
+
+    //一致性哈希的路由键参数，格式为 方法名=参数下标，例如 {"getUser=0"}（未配置的方法按方法名路由）
+    String[] hashKeyArgs() default {};
+
 }
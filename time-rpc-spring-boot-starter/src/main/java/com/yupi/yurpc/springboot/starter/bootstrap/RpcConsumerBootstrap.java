@@ -1,5 +1,6 @@
 package com.yupi.yurpc.springboot.starter.bootstrap;
 
+import com.yupi.yurpc.config.RpcReferenceConfig;
 import com.yupi.yurpc.proxy.ServiceProxyFactory;
 import com.yupi.yurpc.springboot.starter.annotation.RpcReference;
 import lombok.extern.slf4j.Slf4j;
@@ -32,7 +33,9 @@ public class RpcConsumerBootstrap implements BeanPostProcessor {
                     interfaceClass = field.getType();
                 }
                 field.setAccessible(true);
-                Object proxyObject = ServiceProxyFactory.getProxy(interfaceClass);
+                Object proxyObject = rpcReference.mock()
+                        ? ServiceProxyFactory.getMockProxy(interfaceClass)
+                        : ServiceProxyFactory.getProxy(interfaceClass, buildReferenceConfig(rpcReference));
                 try {
                     field.set(bean, proxyObject);
                     field.setAccessible(false);
@@ -44,4 +47,37 @@ public class RpcConsumerBootstrap implements BeanPostProcessor {
         return BeanPostProcessor.super.postProcessAfterInitialization(bean, beanName);
     }
 
+    //根据注解构造服务引用配置
+    private RpcReferenceConfig buildReferenceConfig(RpcReference rpcReference) {
+        RpcReferenceConfig referenceConfig = new RpcReferenceConfig();
+        referenceConfig.setServiceVersion(rpcReference.serviceVersion());
+        referenceConfig.setLoadBalancer(rpcReference.loadBalancer());
+        referenceConfig.setRetryStrategy(rpcReference.retryStrategy());
+        referenceConfig.setTolerantStrategy(rpcReference.tolerantStrategy());
+        if (rpcReference.timeout() > 0) {
+            referenceConfig.setTimeout(rpcReference.timeout());
+        }
+        for (String methodTimeout : rpcReference.methodTimeouts()) {
+            String[] strArray = methodTimeout.split("=");
+            if (strArray.length != 2) {
+                throw new IllegalArgumentException("方法超时时间配置格式错误: " + methodTimeout);
+            }
+            referenceConfig.getMethodTimeouts().put(strArray[0].trim(), Long.parseLong(strArray[1].trim()));
+        }
+        for (String hashKeyArg : rpcReference.hashKeyArgs()) {
+            String[] strArray = hashKeyArg.split("=");
+            if (strArray.length != 2) {
+                throw new IllegalArgumentException("路由键参数配置格式错误: " + hashKeyArg);
+            }
+            referenceConfig.getHashKeyArgs().put(strArray[0].trim(), Integer.parseInt(strArray[1].trim()));
+        }
+        for (String oneWayMethod : rpcReference.oneWayMethods()) {
+            referenceConfig.getOneWayMethods().add(oneWayMethod.trim());
+        }
+        for (String batchMethod : rpcReference.batchMethods()) {
+            referenceConfig.getBatchMethods().add(batchMethod.trim());
+        }
+        return referenceConfig;
+    }
+
 }
@@ -8,6 +8,7 @@ import com.yupi.yurpc.registry.LocalRegistry;
 import com.yupi.yurpc.registry.Registry;
 import com.yupi.yurpc.registry.RegistryFactory;
 import com.yupi.yurpc.springboot.starter.annotation.RpcService;
+import com.yupi.yurpc.utils.HostUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
@@ -38,8 +39,8 @@ public class RpcProviderBootstrap implements BeanPostProcessor {
             String serviceName = interfaceClass.getName();
             String serviceVersion = rpcService.serviceVersion();
             // 2. 注册服务
-            // 本地注册
-            LocalRegistry.register(serviceName, beanClass);
+            // 本地注册（直接使用 Spring 管理的 Bean 作为服务实例）
+            LocalRegistry.register(serviceName, serviceVersion, bean);
 
             // 全局配置
             final RpcConfig rpcConfig = RpcApplication.getRpcConfig();
@@ -54,6 +55,8 @@ public class RpcProviderBootstrap implements BeanPostProcessor {
             serviceMetaInfo.setServiceVersion(serviceVersion);
             serviceMetaInfo.setServiceHost(rpcConfig.getServerHost());
             serviceMetaInfo.setServicePort(rpcConfig.getServerPort());
+            serviceMetaInfo.setHostId(HostUtils.getHostId());
+            serviceMetaInfo.setDomainSocketPath(rpcConfig.getDomainSocketPath());
             try {
                 registry.register(serviceMetaInfo);
             } catch (Exception e) {